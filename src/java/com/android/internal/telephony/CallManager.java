@@ -254,12 +254,12 @@ public class CallManager {
         PhoneConstants.State s = PhoneConstants.State.IDLE;
 
         for (Phone phone : mPhones) {
-            if (phone.getSubId() == subId) {
-                if (phone.getState() == PhoneConstants.State.RINGING) {
-                    s = PhoneConstants.State.RINGING;
-                } else if (phone.getState() == PhoneConstants.State.OFFHOOK) {
-                    if (s == PhoneConstants.State.IDLE) s = PhoneConstants.State.OFFHOOK;
-                }
+            PhoneConstants.State phoneState = phone.getState();
+            if (phoneState == PhoneConstants.State.IDLE || phone.getSubId() != subId) continue;
+            if (phoneState == PhoneConstants.State.RINGING) {
+                s = PhoneConstants.State.RINGING;
+            } else if (phoneState == PhoneConstants.State.OFFHOOK) {
+                if (s == PhoneConstants.State.IDLE) s = PhoneConstants.State.OFFHOOK;
             }
         }
         return s;
@@ -1760,11 +1760,15 @@ public class CallManager {
     private Call getFirstNonIdleCall(List<Call> calls, int subId) {
         Call result = null;
         for (Call call : calls) {
+            // Check the state of the call first, as looking up the sub id of its phone is more
+            // expensive and most calls are idle.
+            boolean isIdle = call.isIdle();
+            if (isIdle && call.getState() == Call.State.IDLE) continue;
             if (call.getPhone().getSubId() == subId) {
-                if (!call.isIdle()) {
+                if (!isIdle) {
                     return call;
-                } else if (call.getState() != Call.State.IDLE) {
-                    if (result == null) result = call;
+                } else if (result == null) {
+                    result = call;
                 }
             }
         }
@@ -41,7 +41,6 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.ResolveInfo;
-import android.content.pm.Signature;
 import android.content.pm.UserInfo;
 import android.net.Uri;
 import android.os.Bundle;
@@ -68,7 +67,7 @@ import android.util.Pair;
 
 import com.android.internal.annotations.GuardedBy;
 import com.android.internal.telephony.flags.FeatureFlags;
-import com.android.internal.telephony.uicc.IccUtils;
+import com.android.internal.telephony.uicc.UiccAccessRuleIndex;
 import com.android.internal.telephony.uicc.UiccPort;
 import com.android.internal.telephony.uicc.UiccProfile;
 import com.android.telephony.Rlog;
@@ -80,7 +79,6 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -101,9 +99,6 @@ public class CarrierPrivilegesTracker extends Handler {
 
     private static final boolean VDBG = false;
 
-    private static final String SHA_1 = "SHA-1";
-    private static final String SHA_256 = "SHA-256";
-
     private static final int PACKAGE_NOT_PRIVILEGED = 0;
     private static final int PACKAGE_PRIVILEGED_FROM_CARRIER_CONFIG = 1;
     private static final int PACKAGE_PRIVILEGED_FROM_SIM = 2;
@@ -197,8 +192,15 @@ public class CarrierPrivilegesTracker extends Handler {
     // - Non-empty list indicates test override with specific rules (CC and UICC rules are ignored)
     @Nullable private List<UiccAccessRule> mTestOverrideRules = null;
     @Nullable private String mTestOverrideCarrierServicePackage = null;
+    // Indexes of the rules above by certificate hash, rebuilt whenever the rules change.
+    @NonNull private UiccAccessRuleIndex mCarrierConfigRuleIndex = UiccAccessRuleIndex.EMPTY;
+    @NonNull private UiccAccessRuleIndex mUiccRuleIndex = UiccAccessRuleIndex.EMPTY;
+    @Nullable private UiccAccessRuleIndex mTestOverrideRuleIndex = null;
     // Map of PackageName -> Certificate hashes for that Package
     @NonNull private final Map<String, Set<String>> mInstalledPackageCerts = new ArrayMap<>();
+    // Map of PackageName -> privileged status, only for installed packages that are privileged.
+    // Updated per package on package changes, and fully recomputed when the rules change.
+    @NonNull private final Map<String, Integer> mPrivilegedPackageStatuses = new ArrayMap<>();
     // Map of PackageName -> UIDs for that Package
     @NonNull private final Map<String, Set<Integer>> mCachedUids = new ArrayMap<>();
 
@@ -589,22 +591,25 @@ public class CarrierPrivilegesTracker extends Handler {
     }
 
     private void updateCertsForPackage(@NonNull PackageInfo pkg) {
-        Set<String> certs = new ArraySet<>(1);
-        List<Signature> signatures = UiccAccessRule.getSignatures(pkg);
-        for (Signature signature : signatures) {
-            byte[] sha1 = UiccAccessRule.getCertHash(signature, SHA_1);
-            certs.add(IccUtils.bytesToHexString(sha1).toUpperCase(Locale.ROOT));
-
-            byte[] sha256 = UiccAccessRule.getCertHash(signature, SHA_256);
-            certs.add(IccUtils.bytesToHexString(sha256).toUpperCase(Locale.ROOT));
-        }
-
+        Set<String> certs = UiccAccessRuleIndex.getCertHashes(pkg);
         mInstalledPackageCerts.put(pkg.packageName, certs);
+        updatePrivilegedStatusForPackage(pkg.packageName, certs);
+    }
+
+    private void updatePrivilegedStatusForPackage(@NonNull String pkgName,
+            @NonNull Set<String> certs) {
+        int priv = getPackagePrivilegedStatus(pkgName, certs);
+        if (priv == PACKAGE_NOT_PRIVILEGED) {
+            mPrivilegedPackageStatuses.remove(pkgName);
+        } else {
+            mPrivilegedPackageStatuses.put(pkgName, priv);
+        }
     }
 
     private void handlePackageRemovedOrDisabledByUser(@Nullable String pkgName) {
         if (pkgName == null) return;
 
+        mPrivilegedPackageStatuses.remove(pkgName);
         if (mInstalledPackageCerts.remove(pkgName) == null || mCachedUids.remove(pkgName) == null) {
             Rlog.e(TAG, "Unknown package was uninstalled or disabled by user: " + pkgName);
             return;
@@ -624,6 +629,9 @@ public class CarrierPrivilegesTracker extends Handler {
         // Cache SIM rules
         mUiccRules.addAll(getSimRules());
 
+        // Index the rules before computing the privileged status of the installed packages
+        updateRuleIndexes();
+
         // Cache all installed packages and their certs
         refreshInstalledPackageCache();
 
@@ -675,9 +683,29 @@ public class CarrierPrivilegesTracker extends Handler {
         currentRules.clear();
         currentRules.addAll(updatedRules);
 
+        updateRuleIndexes();
         maybeUpdatePrivilegedPackagesAndNotifyRegistrants();
     }
 
+    /**
+     * Rebuilds the rule indexes from the current rules and recomputes the privileged status of
+     * all installed packages against them.
+     */
+    private void updateRuleIndexes() {
+        mCarrierConfigRuleIndex = new UiccAccessRuleIndex(mCarrierConfigRules);
+        mUiccRuleIndex = new UiccAccessRuleIndex(mUiccRules);
+        mTestOverrideRuleIndex =
+                mTestOverrideRules == null ? null : new UiccAccessRuleIndex(mTestOverrideRules);
+        updatePrivilegedStatusForAllPackages();
+    }
+
+    private void updatePrivilegedStatusForAllPackages() {
+        mPrivilegedPackageStatuses.clear();
+        for (Map.Entry<String, Set<String>> e : mInstalledPackageCerts.entrySet()) {
+            updatePrivilegedStatusForPackage(e.getKey(), e.getValue());
+        }
+    }
+
     private void maybeUpdatePrivilegedPackagesAndNotifyRegistrants() {
         PrivilegedPackageInfo currentPrivilegedPackageInfo =
                 getCurrentPrivilegedPackagesForAllUsers();
@@ -740,9 +768,8 @@ public class CarrierPrivilegesTracker extends Handler {
         Set<String> carrierServiceEligiblePackages = new ArraySet<>();
         Set<String> privilegedPackageNames = new ArraySet<>();
         Set<Integer> privilegedUids = new ArraySet<>();
-        for (Map.Entry<String, Set<String>> e : mInstalledPackageCerts.entrySet()) {
-            final int priv = getPackagePrivilegedStatus(e.getKey(), e.getValue());
-            switch (priv) {
+        for (Map.Entry<String, Integer> e : mPrivilegedPackageStatuses.entrySet()) {
+            switch (e.getValue()) {
                 case PACKAGE_PRIVILEGED_FROM_SIM:
                 case PACKAGE_PRIVILEGED_FROM_CARRIER_SERVICE_TEST_OVERRIDE: // fallthrough
                     carrierServiceEligiblePackages.add(e.getKey());
@@ -767,29 +794,22 @@ public class CarrierPrivilegesTracker extends Handler {
      * carrier config, from test overrides or from certificates stored on the SIM.
      */
     private int getPackagePrivilegedStatus(@NonNull String pkgName, @NonNull Set<String> certs) {
-        // Double-nested for loops, but each collection should contain at most 2 elements in nearly
-        // every case.
-        // TODO(b/184382310) find a way to speed this up
+        // Rules are indexed by certificate hash, so each lookup only visits the rules that share
+        // a certificate with the package.
         for (String cert : certs) {
             // Non-null (whether empty or not) test override rule will ignore the UICC and CC rules
-            if (mTestOverrideRules != null) {
-                for (UiccAccessRule rule : mTestOverrideRules) {
-                    if (rule.matches(cert, pkgName)) {
-                        return PACKAGE_PRIVILEGED_FROM_SIM;
-                    }
+            if (mTestOverrideRuleIndex != null) {
+                if (mTestOverrideRuleIndex.matches(cert, pkgName)) {
+                    return PACKAGE_PRIVILEGED_FROM_SIM;
                 }
             } else {
-                for (UiccAccessRule rule : mUiccRules) {
-                    if (rule.matches(cert, pkgName)) {
-                        return PACKAGE_PRIVILEGED_FROM_SIM;
-                    }
+                if (mUiccRuleIndex.matches(cert, pkgName)) {
+                    return PACKAGE_PRIVILEGED_FROM_SIM;
                 }
-                for (UiccAccessRule rule : mCarrierConfigRules) {
-                    if (rule.matches(cert, pkgName)) {
-                        return pkgName.equals(mTestOverrideCarrierServicePackage)
-                                ? PACKAGE_PRIVILEGED_FROM_CARRIER_SERVICE_TEST_OVERRIDE
-                                : PACKAGE_PRIVILEGED_FROM_CARRIER_CONFIG;
-                    }
+                if (mCarrierConfigRuleIndex.matches(cert, pkgName)) {
+                    return pkgName.equals(mTestOverrideCarrierServicePackage)
+                            ? PACKAGE_PRIVILEGED_FROM_CARRIER_SERVICE_TEST_OVERRIDE
+                            : PACKAGE_PRIVILEGED_FROM_CARRIER_CONFIG;
                 }
             }
         }
@@ -852,6 +872,8 @@ public class CarrierPrivilegesTracker extends Handler {
         pw.println("CarrierPrivilegesTracker - Test-override rules: " + mTestOverrideRules);
         pw.println("CarrierPrivilegesTracker - SIM-loaded rules: " + mUiccRules);
         pw.println("CarrierPrivilegesTracker - Carrier config rules: " + mCarrierConfigRules);
+        pw.println("CarrierPrivilegesTracker - Privileged package statuses: "
+                + mPrivilegedPackageStatuses.size() + "/" + mInstalledPackageCerts.size());
         if (VDBG) {
             pw.println(
                     "CarrierPrivilegesTracker - Obfuscated Pkgs + Certs: "
@@ -896,6 +918,8 @@ public class CarrierPrivilegesTracker extends Handler {
             @Nullable String carrierServicePackage) {
         mTestOverrideCarrierServicePackage = carrierServicePackage;
         refreshInstalledPackageCache();
+        // The override affects the status of packages privileged by carrier config rules
+        updatePrivilegedStatusForAllPackages();
         maybeUpdatePrivilegedPackagesAndNotifyRegistrants();
     }
 
@@ -913,6 +937,7 @@ public class CarrierPrivilegesTracker extends Handler {
             // best effort.
             refreshInstalledPackageCache();
         }
+        updateRuleIndexes();
         maybeUpdatePrivilegedPackagesAndNotifyRegistrants();
     }
 
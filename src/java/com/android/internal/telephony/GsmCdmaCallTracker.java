@@ -50,6 +50,7 @@ import com.android.internal.telephony.domainselection.DomainSelectionResolver;
 import com.android.internal.telephony.emergency.EmergencyStateTracker;
 import com.android.internal.telephony.flags.FeatureFlags;
 import com.android.internal.telephony.metrics.TelephonyMetrics;
+import com.android.internal.telephony.metrics.VoiceCallSessionStats;
 import com.android.telephony.Rlog;
 
 import java.io.FileDescriptor;
@@ -871,6 +872,8 @@ public class GsmCdmaCallTracker extends CallTracker {
         boolean needsPollDelay = false;
         boolean unknownConnectionAppeared = false;
         int handoverConnectionsSize = mHandoverConnections.size();
+        // Connections which appeared or changed in this poll, for metrics
+        ArrayList<GsmCdmaConnection> changedConnections = new ArrayList<>();
 
         //CDMA
         boolean noConnectionExists = true;
@@ -989,6 +992,7 @@ public class GsmCdmaCallTracker extends CallTracker {
                         }
                     }
                 }
+                changedConnections.add(mConnections[i]);
                 hasNonHangupStateChanged = true;
             } else if (conn != null && dc == null) {
                 if (isPhoneTypeGsm()) {
@@ -1041,6 +1045,7 @@ public class GsmCdmaCallTracker extends CallTracker {
                         return;
                     }
                 } // else something strange happened
+                changedConnections.add(mConnections[i]);
                 hasNonHangupStateChanged = true;
             } else if (conn != null && dc != null) { /* implicit conn.compareTo(dc) */
                 // Call collision case
@@ -1054,6 +1059,7 @@ public class GsmCdmaCallTracker extends CallTracker {
                             unknownConnectionAppeared = true;
                             newUnknownConnectionCdma = conn;
                         }
+                        changedConnections.add(mConnections[i]);
                         checkAndEnableDataCallAfterEmergencyCallDropped();
                     } else {
                         // Call info stored in conn is not consistent with the call info from dc.
@@ -1065,6 +1071,9 @@ public class GsmCdmaCallTracker extends CallTracker {
                 } else {
                     boolean changed;
                     changed = conn.update(dc);
+                    if (changed) {
+                        changedConnections.add(conn);
+                    }
                     hasNonHangupStateChanged = hasNonHangupStateChanged || changed;
                 }
             }
@@ -1214,7 +1223,7 @@ public class GsmCdmaCallTracker extends CallTracker {
 
         if (hasNonHangupStateChanged || newRinging != null || hasAnyCallDisconnected) {
             mPhone.notifyPreciseCallStateChanged();
-            updateMetrics(mConnections);
+            updateMetrics(changedConnections);
         }
 
         // If all handover connections are mapped during this poll process clean it up
@@ -1227,13 +1236,19 @@ public class GsmCdmaCallTracker extends CallTracker {
         //dumpState();
     }
 
-    private void updateMetrics(GsmCdmaConnection[] connections) {
-        ArrayList<GsmCdmaConnection> activeConnections = new ArrayList<>();
-        for (GsmCdmaConnection conn : connections) {
-            if (conn != null) activeConnections.add(conn);
-        }
-        mMetrics.writeRilCallList(mPhone.getPhoneId(), activeConnections, getNetworkCountryIso());
-        mPhone.getVoiceCallSessionStats().onRilCallListChanged(activeConnections);
+    /**
+     * Reports the connections which changed in a poll. The list is reported even if empty, since
+     * a call session ends when the phone becomes idle after a poll.
+     *
+     * <p>The RIL_CALL_LIST_CHANGED event of {@link TelephonyMetrics#writeRilCallList} and
+     * {@link VoiceCallSessionStats#onRilCallListChanged} therefore only carry the calls which
+     * appeared, changed or were disconnected in this poll, not every live call. Calls missing
+     * from the list are unchanged, not ended.
+     */
+    private void updateMetrics(ArrayList<GsmCdmaConnection> changedConnections) {
+        mMetrics.writeRilCallList(mPhone.getPhoneId(), changedConnections,
+                getNetworkCountryIso());
+        mPhone.getVoiceCallSessionStats().onRilCallListChanged(changedConnections);
     }
 
     private void handleRadioNotAvailable() {
@@ -148,6 +148,14 @@ public class LocaleTracker extends Handler {
     @Nullable
     private List<CellInfo> mCellInfoList;
 
+    /** Most frequent MCC in {@link #mCellInfoList}, computed when the list is updated. */
+    @Nullable
+    private String mCellInfoMcc;
+
+    /** Most frequent MCC + MNC with {@link #mCellInfoMcc} in {@link #mCellInfoList}. */
+    @Nullable
+    private MccMnc mCellInfoMccMnc;
+
     /** Count of invalid cell info we've got so far. Will reset once we get a successful one */
     private int mFailCellInfoCount;
 
@@ -200,7 +208,10 @@ public class LocaleTracker extends Handler {
     public void handleMessage(Message msg) {
         switch (msg.what) {
             case EVENT_REQUEST_CELL_INFO:
-                mPhone.requestCellInfoUpdate(null, obtainMessage(EVENT_RESPONSE_CELL_INFO));
+                // Accept cell info received for another client within the shortest retry delay,
+                // instead of querying the modem again.
+                mPhone.requestCellInfoUpdate(null, obtainMessage(EVENT_RESPONSE_CELL_INFO),
+                        CELL_INFO_MIN_DELAY_MS);
                 break;
 
             case EVENT_UNSOL_CELL_INFO:
@@ -400,16 +411,27 @@ public class LocaleTracker extends Handler {
 
     private void processCellInfo(AsyncResult ar) {
         if (ar == null || ar.exception != null) {
-            mCellInfoList = null;
+            setCellInfoList(null);
             return;
         }
         List<CellInfo> cellInfoList = (List<CellInfo>) ar.result;
         String msg = "processCellInfo: cell info=" + cellInfoList;
         if (DBG) log(msg);
-        mCellInfoList = cellInfoList;
+        setCellInfoList(cellInfoList);
         updateLocale();
     }
 
+    /**
+     * Update {@link #mCellInfoList} along with the MCC and MCC + MNC derived from it, so they are
+     * not recomputed each time the locale is updated. Like the other cell info state, they are
+     * only accessed on the handler thread.
+     */
+    private void setCellInfoList(@Nullable List<CellInfo> cellInfoList) {
+        mCellInfoList = cellInfoList;
+        mCellInfoMcc = getMccFromCellInfo();
+        mCellInfoMccMnc = mCellInfoMcc != null ? getMccMncFromCellInfo(mCellInfoMcc) : null;
+    }
+
     private void requestNextCellInfo(boolean succeeded) {
         if (!mIsTracking) return;
 
@@ -474,7 +496,7 @@ public class LocaleTracker extends Handler {
         String msg = "Stopping LocaleTracker";
         if (DBG) log(msg);
         mLocalLog.log(msg);
-        mCellInfoList = null;
+        setCellInfoList(null);
         resetCellInfoRetry();
     }
 
@@ -511,7 +533,7 @@ public class LocaleTracker extends Handler {
         // info.
         if (TextUtils.isEmpty(countryIso)) {
             // Find the most prevalent MCC from surrounding cell towers.
-            String mcc = getMccFromCellInfo();
+            String mcc = mCellInfoMcc;
             if (mcc != null) {
                 countryIso = MccTable.countryCodeForMcc(mcc);
                 countryIsoDebugInfo = "CellInfo: MccTable.countryCodeForMcc(\"" + mcc + "\")";
@@ -519,7 +541,7 @@ public class LocaleTracker extends Handler {
                 // Some MCC+MNC combinations are known to be used in countries other than those
                 // that the MCC alone would suggest. Do a second pass of nearby cells that match
                 // the most frequently observed MCC to see if this could be one of those cases.
-                MccMnc mccMnc = getMccMncFromCellInfo(mcc);
+                MccMnc mccMnc = mCellInfoMccMnc;
                 if (mccMnc != null) {
                     countryIso = MccTable.geoCountryCodeForMccMnc(mccMnc);
                     countryIsoDebugInfo =
@@ -538,7 +560,7 @@ public class LocaleTracker extends Handler {
             countryIsoDebugInfo = "radio off";
 
             // clear cell infos, we don't know where the next network to camp on.
-            mCellInfoList = null;
+            setCellInfoList(null);
         }
 
         log("updateLocale: countryIso = " + countryIso
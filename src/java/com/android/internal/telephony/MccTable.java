@@ -51,8 +51,14 @@ public final class MccTable {
     @GuardedBy("MccTable.class")
     private static TelephonyNetworkFinder sTelephonyNetworkFinder;
 
+    /** The number of distinct 3-digit MCCs, 000 to 999. */
+    private static final int MCC_COUNT = 1000;
+
     static ArrayList<MccEntry> sTable;
 
+    /** {@link #sTable} indexed by MCC, {@code null} for MCCs without an entry. */
+    private static final MccEntry[] sEntriesByMcc = new MccEntry[MCC_COUNT];
+
     /**
      * Container class for mcc and iso. This class implements compareTo so that it can be sorted
      * by mcc.
@@ -159,15 +165,54 @@ public final class MccTable {
                     + "and has been made greylist-max-q. Please file a bug if you still require "
                     + "this API.")
     public static MccEntry entryForMcc(int mcc) {
-        MccEntry m = new MccEntry(mcc, "", 0);
+        if (mcc < 0 || mcc >= MCC_COUNT) {
+            return null;
+        }
+        return sEntriesByMcc[mcc];
+    }
 
-        int index = Collections.binarySearch(sTable, m);
+    /**
+     * Same as {@link #entryForMcc(int)}, for a decimal MCC which is parsed the same way as
+     * {@link Integer#parseInt(String)} but without allocating.
+     *
+     * @return the entry, or {@code null} if there is none or {@code mcc} is not a number.
+     */
+    @Nullable
+    private static MccEntry entryForMcc(@Nullable CharSequence mcc) {
+        return entryForMcc(parseMcc(mcc));
+    }
 
-        if (index < 0) {
-            return null;
-        } else {
-            return sTable.get(index);
+    /**
+     * @return the value of the decimal number {@code mcc}, {@link #MCC_COUNT} if it is too big to
+     * be an MCC, or -1 if it is negative or not a number.
+     */
+    private static int parseMcc(@Nullable CharSequence mcc) {
+        if (mcc == null || mcc.length() == 0) {
+            return -1;
+        }
+        int start = 0;
+        boolean negative = false;
+        char first = mcc.charAt(0);
+        if (first == '+' || first == '-') {
+            if (mcc.length() == 1) {
+                return -1;
+            }
+            negative = first == '-';
+            start = 1;
+        }
+        int value = 0;
+        for (int i = start; i < mcc.length(); i++) {
+            int digit = Character.digit(mcc.charAt(i), 10);
+            if (digit < 0) {
+                return -1;
+            }
+            // Keep validating the remaining characters, but stop growing the value.
+            value = Math.min(value * 10 + digit, MCC_COUNT);
         }
+        if (negative && value != 0) {
+            return -1;
+        }
+        return value;
     }
 
     /**
@@ -192,10 +237,21 @@ public final class MccTable {
      */
     @NonNull
     public static String countryCodeForMcc(@NonNull String mcc) {
-        try {
-            return countryCodeForMcc(Integer.parseInt(mcc));
-        } catch (NumberFormatException ex) {
+        return countryCodeForMcc((CharSequence) mcc);
+    }
+
+    /**
+     * Given a GSM Mobile Country Code, returns a lower-case ISO 3166 alpha-2 country code if
+     * available. Returns empty string if unavailable.
+     */
+    @NonNull
+    public static String countryCodeForMcc(@NonNull CharSequence mcc) {
+        MccEntry entry = entryForMcc(mcc);
+
+        if (entry == null) {
             return "";
+        } else {
+            return entry.mIso;
         }
     }
 
@@ -265,6 +321,21 @@ public final class MccTable {
         }
     }
 
+    /**
+     * Given a GSM Mobile Country Code, returns
+     * the smallest number of digits that M if available.
+     * Returns 2 if unavailable.
+     */
+    public static int smallestDigitsMccForMnc(@NonNull CharSequence mcc) {
+        MccEntry entry = entryForMcc(mcc);
+
+        if (entry == null) {
+            return 2;
+        } else {
+            return entry.mSmallestDigitsMnc;
+        }
+    }
+
     /**
      * Updates MCC and MNC device configuration information for application retrieving
      * correct version of resources.  If MCC is 0, MCC and MNC will be ignored (not set).
@@ -581,5 +652,9 @@ public final class MccTable {
         sTable.add(new MccEntry(750, "fk", 2)); // Falkland Islands (Malvinas)
 
         Collections.sort(sTable);
+
+        for (MccEntry entry : sTable) {
+            sEntriesByMcc[entry.mMcc] = entry;
+        }
     }
 }
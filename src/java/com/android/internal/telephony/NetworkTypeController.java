@@ -55,14 +55,11 @@ import com.android.telephony.Rlog;
 
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.IntStream;
@@ -91,6 +88,14 @@ public class NetworkTypeController extends StateMachine {
             STATE_CONNECTED_RRC_IDLE, STATE_NOT_RESTRICTED_RRC_IDLE, STATE_NOT_RESTRICTED_RRC_CON,
             STATE_RESTRICTED, STATE_LEGACY };
 
+    /** Physical channel config fields used in {@link #updatePhysicalChannelConfigs}. */
+    private static final int PHYSICAL_CHANNEL_CONFIG_FIELDS =
+            PhysicalChannelConfigChangeDetector.FIELD_NETWORK_TYPE
+                    | PhysicalChannelConfigChangeDetector.FIELD_CONNECTION_STATUS
+                    | PhysicalChannelConfigChangeDetector.FIELD_PHYSICAL_CELL_ID
+                    | PhysicalChannelConfigChangeDetector.FIELD_CELL_BANDWIDTH
+                    | PhysicalChannelConfigChangeDetector.FIELD_BAND;
+
     /** Stop all timers and go to current state. */
     public static final int EVENT_UPDATE = 0;
     /** Quit after processing all existing messages. */
@@ -192,6 +197,8 @@ public class NetworkTypeController extends StateMachine {
 
     @NonNull private Map<String, OverrideTimerRule> mOverrideTimerRules = new HashMap<>();
     @NonNull private String mLteEnhancedPattern = "";
+    /** {@link #mLteEnhancedPattern} compiled on first use. */
+    @Nullable private Pattern mLteEnhancedCompiledPattern;
     @Annotation.OverrideNetworkType private int mOverrideNetworkType;
     private boolean mIsPhysicalChannelConfigOn;
     private boolean mIsPrimaryTimerActive;
@@ -206,7 +213,7 @@ public class NetworkTypeController extends StateMachine {
     private int mNrAdvancedThresholdBandwidth;
     private boolean mIncludeLteForNrAdvancedThresholdBandwidth;
     private boolean mRatchetPccFieldsForSameAnchorNrCell;
-    @NonNull private final Set<Integer> mAdditionalNrAdvancedBands = new HashSet<>();
+    @NonNull private final BitSet mAdditionalNrAdvancedBands = new BitSet();
     @NonNull private String mPrimaryTimerState;
     @NonNull private String mSecondaryTimerState;
     // TODO(b/316425811 remove the workaround)
@@ -227,7 +234,9 @@ public class NetworkTypeController extends StateMachine {
     @Nullable private List<PhysicalChannelConfig> mPhysicalChannelConfigs;
 
     // Ratchet physical channel config fields to prevent 5G/5G+ flickering
-    @NonNull private Set<Integer> mRatchetedNrBands = new HashSet<>();
+    @NonNull private final BitSet mRatchetedNrBands = new BitSet();
+    // NR bands of the latest physical channel configs, reused for each update
+    @NonNull private final BitSet mPccNrBands = new BitSet();
     // TODO(b/316425811 remove the workaround)
     private boolean mLastShownNrDueToAdvancedBand = false;
     private int mRatchetedNrBandwidths = 0;
@@ -302,7 +311,7 @@ public class NetworkTypeController extends StateMachine {
         mPhone.registerForPreferredNetworkTypeChanged(getHandler(),
                 EVENT_PREFERRED_NETWORK_MODE_CHANGED, null);
         mPhone.registerForPhysicalChannelConfig(getHandler(),
-                EVENT_PHYSICAL_CHANNEL_CONFIGS_CHANGED, null);
+                EVENT_PHYSICAL_CHANNEL_CONFIGS_CHANGED, null, PHYSICAL_CHANNEL_CONFIG_FIELDS);
         mPhone.getServiceStateTracker().registerForServiceStateChanged(getHandler(),
                 EVENT_SERVICE_STATE_CHANGED, null);
         mIsPhysicalChannelConfig16Supported = mPhone.getContext().getSystemService(
@@ -347,6 +356,7 @@ public class NetworkTypeController extends StateMachine {
         }
         mLteEnhancedPattern = config.getString(
                 CarrierConfigManager.KEY_SHOW_CARRIER_DATA_ICON_PATTERN_STRING);
+        mLteEnhancedCompiledPattern = null;
         mIsTimerResetEnabledForLegacyStateRrcIdle = config.getBoolean(
                 CarrierConfigManager.KEY_NR_TIMERS_RESET_IF_NON_ENDC_AND_RRC_IDLE_BOOL);
         mIsTimerResetEnabledOnPlmnChanges = config.getBoolean(
@@ -367,7 +377,9 @@ public class NetworkTypeController extends StateMachine {
         int[] additionalNrAdvancedBands = config.getIntArray(
                 CarrierConfigManager.KEY_ADDITIONAL_NR_ADVANCED_BANDS_INT_ARRAY);
         if (additionalNrAdvancedBands != null) {
-            Arrays.stream(additionalNrAdvancedBands).forEach(mAdditionalNrAdvancedBands::add);
+            for (int band : additionalNrAdvancedBands) {
+                if (isValidNrBand(band)) mAdditionalNrAdvancedBands.set(band);
+            }
         }
         mNrAdvancedCapablePcoId = config.getInt(
                 CarrierConfigManager.KEY_NR_ADVANCED_CAPABLE_PCO_ID_INT);
@@ -547,38 +559,37 @@ public class NetworkTypeController extends StateMachine {
                 & TelephonyManager.NETWORK_TYPE_BITMASK_NR) == 0) {
             return TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NONE;
         }
-        // Icon display keys in order of priority
-        List<String> keys = new ArrayList<>();
+        // Icon display states in order of priority
+        int overrideType = TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NONE;
         if (isNrSa) {
             if (isNrAdvanced()) {
-                keys.add(STATE_CONNECTED_NR_ADVANCED);
+                overrideType = getOverrideNetworkTypeForState(STATE_CONNECTED_NR_ADVANCED);
             }
         } else {
             switch (mServiceState.getNrState()) {
                 case NetworkRegistrationInfo.NR_STATE_CONNECTED:
                     if (isNrAdvanced()) {
-                        keys.add(STATE_CONNECTED_NR_ADVANCED);
+                        overrideType = getOverrideNetworkTypeForState(STATE_CONNECTED_NR_ADVANCED);
+                    }
+                    if (overrideType == TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NONE) {
+                        overrideType = getOverrideNetworkTypeForState(STATE_CONNECTED);
                     }
-                    keys.add(STATE_CONNECTED);
                     break;
                 case NetworkRegistrationInfo.NR_STATE_NOT_RESTRICTED:
-                    keys.add(isPhysicalLinkActive() ? STATE_NOT_RESTRICTED_RRC_CON
-                            : STATE_NOT_RESTRICTED_RRC_IDLE);
+                    overrideType = getOverrideNetworkTypeForState(isPhysicalLinkActive()
+                            ? STATE_NOT_RESTRICTED_RRC_CON : STATE_NOT_RESTRICTED_RRC_IDLE);
                     break;
                 case NetworkRegistrationInfo.NR_STATE_RESTRICTED:
-                    keys.add(STATE_RESTRICTED);
+                    overrideType = getOverrideNetworkTypeForState(STATE_RESTRICTED);
                     break;
             }
         }
+        return overrideType;
+    }
 
-        for (String key : keys) {
-            OverrideTimerRule rule = mOverrideTimerRules.get(key);
-            if (rule != null && rule.mOverrideType
-                    != TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NONE) {
-                return rule.mOverrideType;
-            }
-        }
-        return TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NONE;
+    private @Annotation.OverrideNetworkType int getOverrideNetworkTypeForState(String state) {
+        OverrideTimerRule rule = mOverrideTimerRules.get(state);
+        return rule != null ? rule.mOverrideType : TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NONE;
     }
 
     private @Annotation.OverrideNetworkType int getLteDisplayType() {
@@ -611,7 +622,10 @@ public class NetworkTypeController extends StateMachine {
         if (TextUtils.isEmpty(mLteEnhancedPattern)) {
             return false;
         }
-        Pattern stringPattern = Pattern.compile(mLteEnhancedPattern);
+        if (mLteEnhancedCompiledPattern == null) {
+            mLteEnhancedCompiledPattern = Pattern.compile(mLteEnhancedPattern);
+        }
+        Pattern stringPattern = mLteEnhancedCompiledPattern;
         for (String opName : new String[] {mServiceState.getOperatorAlphaLongRaw(),
                 mServiceState.getOperatorAlphaShortRaw()}) {
             if (!TextUtils.isEmpty(opName)) {
@@ -1286,7 +1300,8 @@ public class NetworkTypeController extends StateMachine {
         int anchorNrCellId = PhysicalChannelConfig.PHYSICAL_CELL_ID_UNKNOWN;
         int anchorLteCellId = PhysicalChannelConfig.PHYSICAL_CELL_ID_UNKNOWN;
         int nrBandwidths = 0;
-        Set<Integer> nrBands = new HashSet<>();
+        BitSet nrBands = mPccNrBands;
+        nrBands.clear();
         if (physicalChannelConfigs != null) {
             for (PhysicalChannelConfig config : physicalChannelConfigs) {
                 if (config.getNetworkType() == TelephonyManager.NETWORK_TYPE_NR) {
@@ -1295,7 +1310,7 @@ public class NetworkTypeController extends StateMachine {
                         anchorNrCellId = config.getPhysicalCellId();
                     }
                     nrBandwidths += config.getCellBandwidthDownlinkKhz();
-                    nrBands.add(config.getBand());
+                    if (isValidNrBand(config.getBand())) nrBands.set(config.getBand());
                 } else if (config.getNetworkType() == TelephonyManager.NETWORK_TYPE_LTE) {
                     if (config.getConnectionStatus() == CellInfo.CONNECTION_PRIMARY_SERVING
                             && anchorLteCellId == PhysicalChannelConfig.PHYSICAL_CELL_ID_UNKNOWN) {
@@ -1324,7 +1339,7 @@ public class NetworkTypeController extends StateMachine {
         } else if (anchorNrCellId == mLastAnchorNrCellId && mRatchetPccFieldsForSameAnchorNrCell) {
             log("Ratchet physical channel config fields since anchor NR cell is the same.");
             mRatchetedNrBandwidths = Math.max(mRatchetedNrBandwidths, nrBandwidths);
-            mRatchetedNrBands.addAll(nrBands);
+            mRatchetedNrBands.or(nrBands);
         } else {
             if (mFeatureFlags.supportNrSaRrcIdle() && mDoesPccListIndicateIdle
                     && anchorNrCellId != mLastAnchorNrCellId
@@ -1343,7 +1358,8 @@ public class NetworkTypeController extends StateMachine {
                         + mLastAnchorNrCellId + " -> " + anchorNrCellId);
             }
             mRatchetedNrBandwidths = nrBandwidths;
-            mRatchetedNrBands = nrBands;
+            mRatchetedNrBands.clear();
+            mRatchetedNrBands.or(nrBands);
         }
 
         mLastAnchorNrCellId = anchorNrCellId;
@@ -1634,7 +1650,7 @@ public class NetworkTypeController extends StateMachine {
         return isNrAdvancedForPccFields(mRatchetedNrBandwidths, mRatchetedNrBands);
     }
 
-    private boolean isNrAdvancedForPccFields(int bandwidths, Set<Integer> bands) {
+    private boolean isNrAdvancedForPccFields(int bandwidths, BitSet bands) {
         // Check PCO requirement. For carriers using PCO to indicate whether the data connection is
         // NR advanced capable, mNrAdvancedCapablePcoId should be configured to non-zero.
         if (mNrAdvancedCapablePcoId > 0 && !mIsNrAdvancedAllowedByPco) {
@@ -1668,7 +1684,7 @@ public class NetworkTypeController extends StateMachine {
         return mServiceState.getNrFrequencyRange() == ServiceState.FREQUENCY_RANGE_MMWAVE;
     }
 
-    private boolean isAdditionalNrAdvancedBand(Set<Integer> bands) {
+    private boolean isAdditionalNrAdvancedBand(BitSet bands) {
         if (mAdditionalNrAdvancedBands.isEmpty() || bands.isEmpty()) {
             if (DBG && !mAdditionalNrAdvancedBands.isEmpty()) {
                 // Only log if mAdditionalNrAdvancedBands is empty to prevent log spam
@@ -1677,9 +1693,16 @@ public class NetworkTypeController extends StateMachine {
             }
             return false;
         }
-        Set<Integer> intersection = new HashSet<>(mAdditionalNrAdvancedBands);
-        intersection.retainAll(bands);
-        return !intersection.isEmpty();
+        return mAdditionalNrAdvancedBands.intersects(bands);
+    }
+
+    /**
+     * @return {@code true} if the band is a valid NR band, so that it can be set in a band BitSet
+     * without growing it past the highest NR band.
+     */
+    private static boolean isValidNrBand(int band) {
+        return band >= AccessNetworkConstants.NgranBands.BAND_1
+                && band <= AccessNetworkConstants.NgranBands.BAND_261;
     }
 
     private boolean isLte(int rat) {
@@ -77,6 +77,7 @@ import android.telephony.ims.stub.ImsRegistrationImplBase;
 import android.text.TextUtils;
 import android.util.LocalLog;
 import android.util.Log;
+import android.util.SparseArray;
 import android.util.Xml;
 
 import com.android.ims.ImsCall;
@@ -450,7 +451,9 @@ public abstract class Phone extends Handler implements PhoneInternalInterface {
 
     private final RegistrantList mRedialRegistrants = new RegistrantList();
 
-    private final RegistrantList mPhysicalChannelConfigRegistrants = new RegistrantList();
+    /** PhysicalChannelConfig registrants keyed by the fields they are interested in. */
+    private final SparseArray<RegistrantList> mPhysicalChannelConfigRegistrants =
+            new SparseArray<>();
 
     private final RegistrantList mOtaspRegistrants = new RegistrantList();
 
@@ -2110,6 +2113,15 @@ public abstract class Phone extends Handler implements PhoneInternalInterface {
         getServiceStateTracker().requestAllCellInfo(workSource, rspMsg);
     }
 
+    /**
+     * @param workSource calling WorkSource
+     * @param rspMsg the response message containing the cell info
+     * @param maxAgeMillis the maximum age of cached cell info acceptable to the caller
+     */
+    public void requestCellInfoUpdate(WorkSource workSource, Message rspMsg, long maxAgeMillis) {
+        getServiceStateTracker().requestAllCellInfo(workSource, rspMsg, maxAgeMillis);
+    }
+
     /**
      * Returns the current CellIdentity if known
      */
@@ -2917,9 +2929,30 @@ public abstract class Phone extends Handler implements PhoneInternalInterface {
      * @param obj placed in Message.obj.userObj
      */
     public void registerForPhysicalChannelConfig(Handler h, int what, Object obj) {
+        registerForPhysicalChannelConfig(h, what, obj,
+                PhysicalChannelConfigChangeDetector.FIELD_ALL);
+    }
+
+    /**
+     * Registration point for PhysicalChannelConfig change, notified only when some of the given
+     * fields changed.
+     * @param h handler to notify
+     * @param what what code of message when delivered
+     * @param obj placed in Message.obj.userObj
+     * @param fields {@code PhysicalChannelConfigChangeDetector.FIELD_*} bits of the fields of
+     *        interest
+     */
+    public void registerForPhysicalChannelConfig(Handler h, int what, Object obj, int fields) {
         checkCorrectThread(h);
         Registrant registrant = new Registrant(h, what, obj);
-        mPhysicalChannelConfigRegistrants.add(registrant);
+        synchronized (mPhysicalChannelConfigRegistrants) {
+            RegistrantList registrants = mPhysicalChannelConfigRegistrants.get(fields);
+            if (registrants == null) {
+                registrants = new RegistrantList();
+                mPhysicalChannelConfigRegistrants.put(fields, registrants);
+            }
+            registrants.add(registrant);
+        }
         // notify first
         List<PhysicalChannelConfig> physicalChannelConfigs = getPhysicalChannelConfigList();
         if (physicalChannelConfigs != null) {
@@ -2928,12 +2961,37 @@ public abstract class Phone extends Handler implements PhoneInternalInterface {
     }
 
     public void unregisterForPhysicalChannelConfig(Handler h) {
-        mPhysicalChannelConfigRegistrants.remove(h);
+        synchronized (mPhysicalChannelConfigRegistrants) {
+            for (int i = 0; i < mPhysicalChannelConfigRegistrants.size(); i++) {
+                mPhysicalChannelConfigRegistrants.valueAt(i).remove(h);
+            }
+        }
     }
 
     /** Notify {@link PhysicalChannelConfig} changes. */
     public void notifyPhysicalChannelConfig(List<PhysicalChannelConfig> configs) {
-        mPhysicalChannelConfigRegistrants.notifyRegistrants(new AsyncResult(null, configs, null));
+        notifyPhysicalChannelConfig(configs, PhysicalChannelConfigChangeDetector.FIELD_ALL);
+    }
+
+    /**
+     * Notify {@link PhysicalChannelConfig} changes to the registrants interested in the changed
+     * fields, and to the listeners unless nothing changed.
+     *
+     * @param configs the new configs.
+     * @param changedFields {@code PhysicalChannelConfigChangeDetector.FIELD_*} bits of the fields
+     *        which changed since the last notification.
+     */
+    public void notifyPhysicalChannelConfig(List<PhysicalChannelConfig> configs,
+            int changedFields) {
+        if (changedFields == 0) return;
+        AsyncResult ar = new AsyncResult(null, configs, null);
+        synchronized (mPhysicalChannelConfigRegistrants) {
+            for (int i = 0; i < mPhysicalChannelConfigRegistrants.size(); i++) {
+                if ((mPhysicalChannelConfigRegistrants.keyAt(i) & changedFields) != 0) {
+                    mPhysicalChannelConfigRegistrants.valueAt(i).notifyRegistrants(ar);
+                }
+            }
+        }
         mNotifier.notifyPhysicalChannelConfig(this, configs);
     }
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.annotation.Nullable;
+import android.telephony.PhysicalChannelConfig;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes which fields changed between two lists of {@link PhysicalChannelConfig}, so that a
+ * consumer is only notified of the changes it cares about.
+ *
+ * Configs are compared by position. If the lists have different sizes, or only one of them is
+ * {@code null}, every field is considered changed.
+ *
+ * {@hide}
+ */
+public final class PhysicalChannelConfigChangeDetector {
+    /** {@link PhysicalChannelConfig#getNetworkType()} */
+    public static final int FIELD_NETWORK_TYPE = 1 << 0;
+    /** {@link PhysicalChannelConfig#getConnectionStatus()} */
+    public static final int FIELD_CONNECTION_STATUS = 1 << 1;
+    /** {@link PhysicalChannelConfig#getPhysicalCellId()} */
+    public static final int FIELD_PHYSICAL_CELL_ID = 1 << 2;
+    /** Downlink and uplink cell bandwidths. */
+    public static final int FIELD_CELL_BANDWIDTH = 1 << 3;
+    /** {@link PhysicalChannelConfig#getBand()} */
+    public static final int FIELD_BAND = 1 << 4;
+    /** {@link PhysicalChannelConfig#getFrequencyRange()} */
+    public static final int FIELD_FREQUENCY_RANGE = 1 << 5;
+    /** Downlink and uplink channel numbers and frequencies. */
+    public static final int FIELD_CHANNEL = 1 << 6;
+    /** {@link PhysicalChannelConfig#getContextIds()} */
+    public static final int FIELD_CONTEXT_IDS = 1 << 7;
+    /** All fields. */
+    public static final int FIELD_ALL = (1 << 8) - 1;
+
+    private PhysicalChannelConfigChangeDetector() {}
+
+    /**
+     * @return the {@code FIELD_*} bits of the fields which differ between {@code oldConfigs} and
+     * {@code newConfigs}, or 0 if the lists are equal.
+     */
+    public static int getChangedFields(@Nullable List<PhysicalChannelConfig> oldConfigs,
+            @Nullable List<PhysicalChannelConfig> newConfigs) {
+        if (oldConfigs == null || newConfigs == null) {
+            return oldConfigs == newConfigs ? 0 : FIELD_ALL;
+        }
+        if (oldConfigs.size() != newConfigs.size()) return FIELD_ALL;
+
+        int changedFields = 0;
+        for (int i = 0; i < newConfigs.size() && changedFields != FIELD_ALL; i++) {
+            changedFields |= getChangedFields(oldConfigs.get(i), newConfigs.get(i));
+        }
+        return changedFields;
+    }
+
+    private static int getChangedFields(PhysicalChannelConfig oldConfig,
+            PhysicalChannelConfig newConfig) {
+        if (oldConfig == newConfig) return 0;
+        if (oldConfig == null || newConfig == null) return FIELD_ALL;
+
+        int changedFields = 0;
+        if (oldConfig.getNetworkType() != newConfig.getNetworkType()) {
+            changedFields |= FIELD_NETWORK_TYPE;
+        }
+        if (oldConfig.getConnectionStatus() != newConfig.getConnectionStatus()) {
+            changedFields |= FIELD_CONNECTION_STATUS;
+        }
+        if (oldConfig.getPhysicalCellId() != newConfig.getPhysicalCellId()) {
+            changedFields |= FIELD_PHYSICAL_CELL_ID;
+        }
+        if (oldConfig.getCellBandwidthDownlinkKhz() != newConfig.getCellBandwidthDownlinkKhz()
+                || oldConfig.getCellBandwidthUplinkKhz() != newConfig.getCellBandwidthUplinkKhz()) {
+            changedFields |= FIELD_CELL_BANDWIDTH;
+        }
+        if (oldConfig.getBand() != newConfig.getBand()) {
+            changedFields |= FIELD_BAND;
+        }
+        if (oldConfig.getFrequencyRange() != newConfig.getFrequencyRange()) {
+            changedFields |= FIELD_FREQUENCY_RANGE;
+        }
+        if (oldConfig.getDownlinkChannelNumber() != newConfig.getDownlinkChannelNumber()
+                || oldConfig.getUplinkChannelNumber() != newConfig.getUplinkChannelNumber()
+                || oldConfig.getDownlinkFrequencyKhz() != newConfig.getDownlinkFrequencyKhz()
+                || oldConfig.getUplinkFrequencyKhz() != newConfig.getUplinkFrequencyKhz()) {
+            changedFields |= FIELD_CHANNEL;
+        }
+        if (!Arrays.equals(oldConfig.getContextIds(), newConfig.getContextIds())) {
+            changedFields |= FIELD_CONTEXT_IDS;
+        }
+        return changedFields;
+    }
+}
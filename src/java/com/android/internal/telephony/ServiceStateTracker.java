@@ -81,7 +81,6 @@ import android.util.EventLog;
 import android.util.LocalLog;
 import android.util.Pair;
 import android.util.SparseArray;
-import android.util.SparseBooleanArray;
 
 import com.android.internal.R;
 import com.android.internal.annotations.VisibleForTesting;
@@ -185,7 +184,24 @@ public class ServiceStateTracker extends Handler {
 
     private long mLastCellInfoReqTime;
     private List<CellInfo> mLastCellInfoList = null;
+    /** Elapsed realtime when {@link #mLastCellInfoList} was received. */
+    private long mLastCellInfoListTime;
+    /** Number of cell info requests answered from {@link #mLastCellInfoList}. */
+    private int mCellInfoCacheHitCount;
+    /** CellIdentity derived from a cell info list, see {@link #getCellIdentity()}. */
+    private volatile Pair<List<CellInfo>, CellIdentity> mCellIdentityFromCellInfo;
     private List<PhysicalChannelConfig> mLastPhysicalChannelConfigList = null;
+    /** Number of completed service state polls. */
+    private int mPollStateDoneCount;
+    /** Number of registrant lists notified by {@link #pollStateDone()}. */
+    private int mPollStateNotificationCount;
+    /** Number of service state broadcasts sent by {@link #pollStateDone()}. */
+    private int mServiceStateBroadcastCount;
+    /** The parceled service state last inserted into the ServiceStateProvider, and its sub id. */
+    private byte[] mServiceStateInDb;
+    private int mServiceStateInDbSubId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
+    /** Number of ServiceStateProvider updates skipped because the state was already there. */
+    private int mServiceStateDbUpdateSkipCount;
 
     private final Set<Integer> mRadioPowerOffReasons = new HashSet();
 
@@ -799,6 +815,7 @@ public class ServiceStateTracker extends Handler {
         mNewSS.setOutOfService(false);
         mLastCellInfoReqTime = 0;
         mLastCellInfoList = null;
+        mLastCellInfoListTime = 0;
         mStartedGprsRegCheck = false;
         mReportedGprsNoReg = false;
         mMdn = null;
@@ -1264,6 +1281,7 @@ public class ServiceStateTracker extends Handler {
                         cellInfo = (List<CellInfo>) ar.result;
                         updateOperatorNameForCellInfo(cellInfo);
                         mLastCellInfoList = cellInfo;
+                        mLastCellInfoListTime = SystemClock.elapsedRealtime();
                         mPhone.notifyCellInfo(cellInfo);
                         if (VDBG) {
                             log("CELL_INFO_LIST: size=" + cellInfo.size() + " list=" + cellInfo);
@@ -1285,6 +1303,7 @@ public class ServiceStateTracker extends Handler {
                         // wrong.
                         loge("Timeout waiting for CellInfo; (everybody panic)!");
                         mLastCellInfoList = null;
+                        mLastCellInfoListTime = 0;
                         // Since the timeout is applicable, fall through and update all synchronous
                         // callers with the failure.
                     }
@@ -1689,6 +1708,8 @@ public class ServiceStateTracker extends Handler {
                         log("EVENT_PHYSICAL_CHANNEL_CONFIG: list=" + list
                                 + (list == null ? "" : ", list.size()=" + list.size()));
                     }
+                    int changedFields = PhysicalChannelConfigChangeDetector.getChangedFields(
+                            mLastPhysicalChannelConfigList, list);
                     mLastPhysicalChannelConfigList = list;
                     boolean hasChanged = false;
                     if (updateNrStateFromPhysicalChannelConfigs(list, mSS)) {
@@ -1702,7 +1723,7 @@ public class ServiceStateTracker extends Handler {
                     hasChanged |= RatRatcheter
                             .updateBandwidths(getBandwidthsFromConfigs(list), mSS);
 
-                    mPhone.notifyPhysicalChannelConfig(list);
+                    mPhone.notifyPhysicalChannelConfig(list, changedFields);
                     // Notify NR frequency, NR connection status or bandwidths changed.
                     if (hasChanged) {
                         mPhone.notifyServiceStateChanged(mPhone.getServiceState());
@@ -3471,10 +3492,11 @@ public class ServiceStateTracker extends Handler {
                 mSS.getState() == ServiceState.STATE_POWER_OFF
                         && mNewSS.getState() != ServiceState.STATE_POWER_OFF;
 
-        SparseBooleanArray hasDataAttached = new SparseBooleanArray();
-        SparseBooleanArray hasDataDetached = new SparseBooleanArray();
-        SparseBooleanArray hasRilDataRadioTechnologyChanged = new SparseBooleanArray();
-        SparseBooleanArray hasDataRegStateChanged = new SparseBooleanArray();
+        // Per transport changes, as bit masks of transportBit(transport).
+        int hasDataAttached = 0;
+        int hasDataDetached = 0;
+        int hasRilDataRadioTechnologyChanged = 0;
+        int hasDataRegStateChanged = 0;
         boolean anyDataRegChanged = false;
         boolean anyDataRatChanged = false;
         boolean hasAlphaRawChanged =
@@ -3488,13 +3510,16 @@ public class ServiceStateTracker extends Handler {
             NetworkRegistrationInfo newNrs = mNewSS.getNetworkRegistrationInfo(
                     NetworkRegistrationInfo.DOMAIN_PS, transport);
 
-            boolean changed = (oldNrs == null || !oldNrs.isInService() || hasAirplaneModeOnChanged)
-                    && (newNrs != null && newNrs.isInService());
-            hasDataAttached.put(transport, changed);
+            final int transportBit = transportBit(transport);
+            if ((oldNrs == null || !oldNrs.isInService() || hasAirplaneModeOnChanged)
+                    && (newNrs != null && newNrs.isInService())) {
+                hasDataAttached |= transportBit;
+            }
 
-            changed = (oldNrs != null && oldNrs.isInService())
-                    && (newNrs == null || !newNrs.isInService());
-            hasDataDetached.put(transport, changed);
+            if ((oldNrs != null && oldNrs.isInService())
+                    && (newNrs == null || !newNrs.isInService())) {
+                hasDataDetached |= transportBit;
+            }
 
             int oldRAT = oldNrs != null ? oldNrs.getAccessNetworkTechnology()
                     : TelephonyManager.NETWORK_TYPE_UNKNOWN;
@@ -3506,8 +3531,9 @@ public class ServiceStateTracker extends Handler {
 
             // If the carrier enable KEY_SHOW_CARRIER_DATA_ICON_PATTERN_STRING and the operator name
             // match this pattern, the data rat display LteAdvanced indicator.
-            hasRilDataRadioTechnologyChanged.put(transport,
-                    oldRAT != newRAT || isOldCA != isNewCA || hasAlphaRawChanged);
+            if (oldRAT != newRAT || isOldCA != isNewCA || hasAlphaRawChanged) {
+                hasRilDataRadioTechnologyChanged |= transportBit;
+            }
             if (oldRAT != newRAT) {
                 anyDataRatChanged = true;
             }
@@ -3516,8 +3542,8 @@ public class ServiceStateTracker extends Handler {
                     : NetworkRegistrationInfo.REGISTRATION_STATE_UNKNOWN;
             int newRegState = newNrs != null ? newNrs.getNetworkRegistrationState()
                     : NetworkRegistrationInfo.REGISTRATION_STATE_UNKNOWN;
-            hasDataRegStateChanged.put(transport, oldRegState != newRegState);
             if (oldRegState != newRegState) {
+                hasDataRegStateChanged |= transportBit;
                 anyDataRegChanged = true;
             }
         }
@@ -3596,11 +3622,12 @@ public class ServiceStateTracker extends Handler {
             log("pollStateDone:"
                     + " hasRegistered = " + hasRegistered
                     + " hasDeregistered = " + hasDeregistered
-                    + " hasDataAttached = " + hasDataAttached
-                    + " hasDataDetached = " + hasDataDetached
-                    + " hasDataRegStateChanged = " + hasDataRegStateChanged
+                    + " hasDataAttached = " + transportsToString(hasDataAttached)
+                    + " hasDataDetached = " + transportsToString(hasDataDetached)
+                    + " hasDataRegStateChanged = " + transportsToString(hasDataRegStateChanged)
                     + " hasRilVoiceRadioTechnologyChanged = " + hasRilVoiceRadioTechnologyChanged
-                    + " hasRilDataRadioTechnologyChanged = " + hasRilDataRadioTechnologyChanged
+                    + " hasRilDataRadioTechnologyChanged = "
+                    + transportsToString(hasRilDataRadioTechnologyChanged)
                     + " hasDataTransportPreferenceChanged = " + hasDataTransportPreferenceChanged
                     + " hasChanged = " + hasChanged
                     + " hasVoiceRoamingOn = " + hasVoiceRoamingOn
@@ -3653,8 +3680,9 @@ public class ServiceStateTracker extends Handler {
             mRejectCode = mNewRejectCode;
         }
 
-        if (!Objects.equals(mSS, mNewSS)) {
-            mServiceStateChangedRegistrants.notifyRegistrants();
+        mPollStateDoneCount++;
+        if (hasChanged) {
+            notifyPollStateRegistrants(mServiceStateChangedRegistrants);
         }
 
         ServiceState oldMergedSS = new ServiceState(mPhone.getServiceState());
@@ -3676,7 +3704,7 @@ public class ServiceStateTracker extends Handler {
         int areaCode = getAreaCodeFromCellIdentity(mCellIdentity);
         if (areaCode != mLastKnownAreaCode && areaCode != CellInfo.UNAVAILABLE) {
             mLastKnownAreaCode = areaCode;
-            mAreaCodeChangedRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mAreaCodeChangedRegistrants);
         }
 
         if (hasRilVoiceRadioTechnologyChanged) {
@@ -3693,17 +3721,17 @@ public class ServiceStateTracker extends Handler {
         }
 
         if (hasRegistered) {
-            mNetworkAttachedRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mNetworkAttachedRegistrants);
             mNitzState.handleNetworkAvailable();
         }
 
         if (hasDeregistered) {
-            mNetworkDetachedRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mNetworkDetachedRegistrants);
             mNitzState.handleNetworkUnavailable();
         }
 
         if (hasCssIndicatorChanged) {
-            mCssIndicatorChangedRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mCssIndicatorChangedRegistrants);
         }
 
         if (hasRejectCauseChanged) {
@@ -3783,6 +3811,7 @@ public class ServiceStateTracker extends Handler {
             // notify using PhoneStateListener and the legacy intent ACTION_SERVICE_STATE_CHANGED
             // notify service state changed only if the merged service state is changed.
             if (!oldMergedSS.equals(mPhone.getServiceState())) {
+                mServiceStateBroadcastCount++;
                 mPhone.notifyServiceStateChanged(mPhone.getServiceState());
             }
 
@@ -3805,8 +3834,8 @@ public class ServiceStateTracker extends Handler {
         }
 
         if (has4gHandoff) {
-            mAttachedRegistrants.get(AccessNetworkConstants.TRANSPORT_TYPE_WWAN)
-                    .notifyRegistrants();
+            notifyPollStateRegistrants(
+                    mAttachedRegistrants.get(AccessNetworkConstants.TRANSPORT_TYPE_WWAN));
             shouldLogAttachedChange = true;
         }
 
@@ -3818,13 +3847,14 @@ public class ServiceStateTracker extends Handler {
         }
 
         for (int transport : mAccessNetworksManager.getAvailableTransports()) {
-            if (hasRilDataRadioTechnologyChanged.get(transport)) {
+            final int transportBit = transportBit(transport);
+            if ((hasRilDataRadioTechnologyChanged & transportBit) != 0) {
                 shouldLogRatChange = true;
                 mPhone.getSignalStrengthController().notifySignalStrength();
             }
 
-            if (hasDataRegStateChanged.get(transport)
-                    || hasRilDataRadioTechnologyChanged.get(transport)
+            if ((hasDataRegStateChanged & transportBit) != 0
+                    || (hasRilDataRadioTechnologyChanged & transportBit) != 0
                     // Update all transports if preference changed so that consumers can be notified
                     // that ServiceState#getRilDataRadioTechnology has changed.
                     || hasDataTransportPreferenceChanged) {
@@ -3832,16 +3862,16 @@ public class ServiceStateTracker extends Handler {
                 notifyDataRegStateRilRadioTechnologyChanged(transport);
             }
 
-            if (hasDataAttached.get(transport)) {
+            if ((hasDataAttached & transportBit) != 0) {
                 shouldLogAttachedChange = true;
                 if (mAttachedRegistrants.get(transport) != null) {
-                    mAttachedRegistrants.get(transport).notifyRegistrants();
+                    notifyPollStateRegistrants(mAttachedRegistrants.get(transport));
                 }
             }
-            if (hasDataDetached.get(transport)) {
+            if ((hasDataDetached & transportBit) != 0) {
                 shouldLogAttachedChange = true;
                 if (mDetachedRegistrants.get(transport) != null) {
-                    mDetachedRegistrants.get(transport).notifyRegistrants();
+                    notifyPollStateRegistrants(mDetachedRegistrants.get(transport));
                 }
             }
         }
@@ -3871,19 +3901,19 @@ public class ServiceStateTracker extends Handler {
         }
 
         if (hasVoiceRoamingOn) {
-            mVoiceRoamingOnRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mVoiceRoamingOnRegistrants);
         }
 
         if (hasVoiceRoamingOff) {
-            mVoiceRoamingOffRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mVoiceRoamingOffRegistrants);
         }
 
         if (hasDataRoamingOn) {
-            mDataRoamingOnRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mDataRoamingOnRegistrants);
         }
 
         if (hasDataRoamingOff) {
-            mDataRoamingOffRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mDataRoamingOffRegistrants);
         }
 
         if (hasLocationChanged) {
@@ -3891,11 +3921,11 @@ public class ServiceStateTracker extends Handler {
         }
 
         if (hasNrStateChanged) {
-            mNrStateChangedRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mNrStateChangedRegistrants);
         }
 
         if (hasNrFrequencyRangeChanged) {
-            mNrFrequencyChangedRegistrants.notifyRegistrants();
+            notifyPollStateRegistrants(mNrFrequencyChangedRegistrants);
         }
 
         if (mPhone.isPhoneTypeGsm()) {
@@ -3916,14 +3946,47 @@ public class ServiceStateTracker extends Handler {
         }
     }
 
+    /** @return the bit of {@code transport} in the per transport change masks. */
+    private static int transportBit(@TransportType int transport) {
+        return 1 << transport;
+    }
+
+    private static String transportsToString(int transportBits) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int transport = 0; transportBits >> transport != 0; transport++) {
+            if ((transportBits & transportBit(transport)) != 0) {
+                if (sb.length() > 1) sb.append(",");
+                sb.append(AccessNetworkConstants.transportTypeToString(transport));
+            }
+        }
+        return sb.append("]").toString();
+    }
+
+    private void notifyPollStateRegistrants(RegistrantList registrants) {
+        mPollStateNotificationCount++;
+        registrants.notifyRegistrants();
+    }
+
     /**
      * Insert SS information into ServiceStateProvider DB table for a sub id.
-     * This will trigger apps to wake through JobScheduler
+     * This will trigger apps to wake through JobScheduler, so nothing is inserted if the
+     * provider already has the same service state for the sub id.
      */
-    private void updateServiceStateToDb(ServiceState serviceState) {
+    @VisibleForTesting
+    void updateServiceStateToDb(ServiceState serviceState) {
+        int subId = mPhone.getSubId();
+        byte[] parceledServiceState = marshallServiceState(serviceState);
+        if (subId == mServiceStateInDbSubId
+                && Arrays.equals(parceledServiceState, mServiceStateInDb)) {
+            mServiceStateDbUpdateSkipCount++;
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(SERVICE_STATE, parceledServiceState);
         mPhone.getContext().getContentResolver()
-                .insert(getUriForSubscriptionId(mPhone.getSubId()),
-                        getContentValuesForServiceState(serviceState));
+                .insert(getUriForSubscriptionId(subId), values);
+        mServiceStateInDb = parceledServiceState;
+        mServiceStateInDbSubId = subId;
     }
 
     private String getOperatorNameFromEri() {
@@ -4393,7 +4456,14 @@ public class ServiceStateTracker extends Handler {
     public CellIdentity getCellIdentity() {
         if (mCellIdentity != null) return mCellIdentity;
 
-        CellIdentity ci = getCellIdentityFromCellInfo(getAllCellInfo());
+        // Only scan the cell info list again if it changed since the last call.
+        List<CellInfo> cellInfo = getAllCellInfo();
+        Pair<List<CellInfo>, CellIdentity> cached = mCellIdentityFromCellInfo;
+        if (cached == null || cached.first != cellInfo) {
+            cached = new Pair<>(cellInfo, getCellIdentityFromCellInfo(cellInfo));
+            mCellIdentityFromCellInfo = cached;
+        }
+        CellIdentity ci = cached.second;
         if (ci != null) return ci;
 
         return mPhone.getPhoneType() == PhoneConstants.PHONE_TYPE_CDMA
@@ -5176,6 +5246,34 @@ public class ServiceStateTracker extends Handler {
         }
     }
 
+    /**
+     * Request CellInfo no older than {@code maxAgeMillis}.
+     *
+     * If the latest CellInfo, whether requested by any caller or reported by the modem, was
+     * received within {@code maxAgeMillis}, it is returned without querying the modem. Otherwise
+     * this behaves like {@link #requestAllCellInfo(WorkSource, Message)}, and shares any request
+     * already in flight. The minimum interval between requests to the modem still applies, so
+     * within that interval of the previous request the latest CellInfo is returned even if it is
+     * older than {@code maxAgeMillis}.
+     *
+     * @param workSource of the caller for power accounting
+     * @param rspMsg the response message to get the response to the CellInfo request
+     * @param maxAgeMillis the maximum age of cached CellInfo acceptable to the caller
+     */
+    public void requestAllCellInfo(WorkSource workSource, @NonNull Message rspMsg,
+            long maxAgeMillis) {
+        synchronized (mPendingCellInfoRequests) {
+            if (mLastCellInfoList != null
+                    && SystemClock.elapsedRealtime() - mLastCellInfoListTime <= maxAgeMillis) {
+                mCellInfoCacheHitCount++;
+                AsyncResult.forMessage(rspMsg, mLastCellInfoList, null);
+                rspMsg.sendToTarget();
+                return;
+            }
+        }
+        requestAllCellInfo(workSource, rspMsg);
+    }
+
     /**
      * Registration point for subscription info ready
      * @param h handler to notify
@@ -5260,6 +5358,12 @@ public class ServiceStateTracker extends Handler {
         pw.println(" mPendingRadioPowerOffAfterDataOff=" + mPendingRadioPowerOffAfterDataOff);
         pw.println(" mCellIdentity=" + Rlog.pii(VDBG, mCellIdentity));
         pw.println(" mLastCellInfoReqTime=" + mLastCellInfoReqTime);
+        pw.println(" mLastCellInfoListTime=" + mLastCellInfoListTime);
+        pw.println(" mCellInfoCacheHitCount=" + mCellInfoCacheHitCount);
+        pw.println(" mPollStateDoneCount=" + mPollStateDoneCount);
+        pw.println(" mPollStateNotificationCount=" + mPollStateNotificationCount);
+        pw.println(" mServiceStateBroadcastCount=" + mServiceStateBroadcastCount);
+        pw.println(" mServiceStateDbUpdateSkipCount=" + mServiceStateDbUpdateSkipCount);
         dumpCellInfoList(pw);
         pw.flush();
         pw.println(" mAllowedNetworkTypes=" + mAllowedNetworkTypes);
@@ -5872,22 +5976,38 @@ public class ServiceStateTracker extends Handler {
         mServiceStateStats = serviceStateStats;
     }
 
+    /** Returns the number of registrant lists notified by {@link #pollStateDone()}. */
+    @VisibleForTesting
+    public int getPollStateNotificationCount() {
+        return mPollStateNotificationCount;
+    }
+
+    /** Returns the number of service state broadcasts sent by {@link #pollStateDone()}. */
+    @VisibleForTesting
+    public int getServiceStateBroadcastCount() {
+        return mServiceStateBroadcastCount;
+    }
+
     /**
-     * Used to insert a ServiceState into the ServiceStateProvider as a ContentValues instance.
+     * Used to insert a ServiceState into the ServiceStateProvider as the {@link #SERVICE_STATE}
+     * column.
      *
      * Copied from packages/services/Telephony/src/com/android/phone/ServiceStateProvider.java
      *
-     * @param state the ServiceState to convert into ContentValues
-     * @return the convertedContentValues instance
+     * @param state the ServiceState to convert
+     * @return the parceled ServiceState
      */
-    private ContentValues getContentValuesForServiceState(ServiceState state) {
-        ContentValues values = new ContentValues();
+    private static byte[] marshallServiceState(ServiceState state) {
         final Parcel p = Parcel.obtain();
-        state.writeToParcel(p, 0);
-        // Turn the parcel to byte array. Safe to do this because the content values were never
-        // written into a persistent storage. ServiceStateProvider keeps values in the memory.
-        values.put(SERVICE_STATE, p.marshall());
-        return values;
+        try {
+            state.writeToParcel(p, 0);
+            // Turn the parcel to byte array. Safe to do this because the content values were
+            // never written into a persistent storage. ServiceStateProvider keeps values in the
+            // memory.
+            return p.marshall();
+        } finally {
+            p.recycle();
+        }
     }
 
     /**
@@ -29,6 +29,7 @@ import android.os.PersistableBundle;
 import android.os.Registrant;
 import android.os.RegistrantList;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.telephony.AccessNetworkConstants;
 import android.telephony.AnomalyReporter;
 import android.telephony.CarrierConfigManager;
@@ -36,6 +37,7 @@ import android.telephony.CellIdentity;
 import android.telephony.CellIdentityLte;
 import android.telephony.CellIdentityNr;
 import android.telephony.CellInfo;
+import android.telephony.CellSignalStrength;
 import android.telephony.CellSignalStrengthLte;
 import android.telephony.CellSignalStrengthNr;
 import android.telephony.ServiceState;
@@ -94,6 +96,12 @@ public class SignalStrengthController extends Handler {
      * thresholds set by apps.
      */
     private static final int ALIGNMENT_HYSTERESIS_DB = 1;
+    /**
+     * Minimum time between signal strength notifications carrying a level change while the device
+     * is idle. Changes which don't affect any level are not notified at all while idle.
+     */
+    private static final long IDLE_NOTIFICATION_MIN_INTERVAL_MILLIS =
+            TimeUnit.SECONDS.toMillis(10);
 
     private static final int EVENT_SET_SIGNAL_STRENGTH_UPDATE_REQUEST       = 1;
     private static final int EVENT_CLEAR_SIGNAL_STRENGTH_UPDATE_REQUEST     = 2;
@@ -105,6 +113,7 @@ public class SignalStrengthController extends Handler {
     private static final int EVENT_SIGNAL_STRENGTH_UPDATE                   = 8;
     public static final int EVENT_POLL_SIGNAL_STRENGTH_DONE                = 9;
     private static final int EVENT_SERVICE_STATE_CHANGED                    = 10;
+    private static final int EVENT_NOTIFY_DEFERRED_SIGNAL_STRENGTH          = 11;
 
     @NonNull
     private final Phone mPhone;
@@ -117,6 +126,14 @@ public class SignalStrengthController extends Handler {
     private long mSignalStrengthUpdatedTime;
     @Nullable
     private SignalStrength mLastSignalStrength = null;
+    /** Elapsed realtime of the last signal strength notification. */
+    private long mLastSignalStrengthNotifiedTime;
+    /** Whether any app asked for signal strength reports while the device is idle. */
+    private boolean mAlwaysReportSignalStrength = false;
+    /** Number of signal strength updates received from the modem. */
+    private long mSignalStrengthReceivedCount;
+    /** Number of signal strength changes notified to registrants and listeners. */
+    private long mSignalStrengthNotifiedCount;
 
     /**
      * List of LTE EARFCNs (E-UTRAN Absolute Radio Frequency Channel Number,
@@ -124,7 +141,7 @@ public class SignalStrengthController extends Handler {
      * inclusive ranges for which the lte rsrp boost is applied
      */
     @Nullable
-    private ArrayList<Pair<Integer, Integer>> mEarfcnPairListForRsrpBoost = null;
+    private ArfcnRanges mEarfcnRangesForRsrpBoost = null;
     /**
      * Offset which is reduced from the rsrp threshold while calculating signal strength level.
      */
@@ -135,7 +152,7 @@ public class SignalStrengthController extends Handler {
      * inclusive ranges for which the corresponding nr rsrp boost is applied
      */
     @Nullable
-    private ArrayList<Pair<Integer, Integer>> mNrarfcnRangeListForRsrpBoost = null;
+    private ArfcnRanges mNrarfcnRangesForRsrpBoost = null;
     @Nullable
     private int[] mNrRsrpBoost = null;
     @NonNull
@@ -251,6 +268,15 @@ public class SignalStrengthController extends Handler {
 
             case EVENT_ON_DEVICE_IDLE_STATE_CHANGED: {
                 updateReportingCriteria();
+                if (!((boolean) msg.obj)) {
+                    // Catch up with the changes held back while the device was idle.
+                    notifyDeferredSignalStrength();
+                }
+                break;
+            }
+
+            case EVENT_NOTIFY_DEFERRED_SIGNAL_STRENGTH: {
+                notifySignalStrength();
                 break;
             }
 
@@ -342,6 +368,52 @@ public class SignalStrengthController extends Handler {
             loge("updateSignalStrength: serviceStateTracker is null");
         }
         mSignalStrengthUpdatedTime = System.currentTimeMillis();
+        mSignalStrengthReceivedCount++;
+        if (shouldDeferSignalStrengthNotification()) return;
+        notifySignalStrength();
+    }
+
+    /**
+     * Whether to hold back the notification of {@code mSignalStrength}. While the device is idle
+     * and no app asked for reports while idle, updates which don't change any signal level are
+     * not notified, and level changes are notified at most every
+     * {@link #IDLE_NOTIFICATION_MIN_INTERVAL_MILLIS}. {@link #getSignalStrength()} always returns
+     * the latest value.
+     */
+    private boolean shouldDeferSignalStrengthNotification() {
+        if (mLastSignalStrength == null || mAlwaysReportSignalStrength
+                || !mPhone.isDeviceIdle()) {
+            return false;
+        }
+        if (hasSameLevels(mSignalStrength, mLastSignalStrength)) return true;
+
+        long delay = mLastSignalStrengthNotifiedTime + IDLE_NOTIFICATION_MIN_INTERVAL_MILLIS
+                - SystemClock.elapsedRealtime();
+        if (delay <= 0) return false;
+        if (!hasMessages(EVENT_NOTIFY_DEFERRED_SIGNAL_STRENGTH)) {
+            sendEmptyMessageDelayed(EVENT_NOTIFY_DEFERRED_SIGNAL_STRENGTH, delay);
+        }
+        return true;
+    }
+
+    private static boolean hasSameLevels(@NonNull SignalStrength a, @NonNull SignalStrength b) {
+        if (a.getLevel() != b.getLevel()) return false;
+        List<CellSignalStrength> cellSignalStrengthsA = a.getCellSignalStrengths();
+        List<CellSignalStrength> cellSignalStrengthsB = b.getCellSignalStrengths();
+        if (cellSignalStrengthsA.size() != cellSignalStrengthsB.size()) return false;
+        for (int i = 0; i < cellSignalStrengthsA.size(); i++) {
+            CellSignalStrength cssA = cellSignalStrengthsA.get(i);
+            CellSignalStrength cssB = cellSignalStrengthsB.get(i);
+            if (cssA.getClass() != cssB.getClass() || cssA.getLevel() != cssB.getLevel()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Notify the signal strength held back by {@link #shouldDeferSignalStrengthNotification}. */
+    private void notifyDeferredSignalStrength() {
+        removeMessages(EVENT_NOTIFY_DEFERRED_SIGNAL_STRENGTH);
         notifySignalStrength();
     }
 
@@ -776,6 +848,8 @@ public class SignalStrengthController extends Handler {
                 mSignalStrengthChangedRegistrants.notifyRegistrants();
                 mPhone.notifySignalStrength();
                 mLastSignalStrength = mSignalStrength;
+                mLastSignalStrengthNotifiedTime = SystemClock.elapsedRealtime();
+                mSignalStrengthNotifiedCount++;
             } catch (NullPointerException ex) {
                 loge("updateSignalStrength() Phone already destroyed: " + ex
                         + "SignalStrength not notified");
@@ -820,10 +894,12 @@ public class SignalStrengthController extends Handler {
         pw.println("mSignalRequestRecords=" + mSignalRequestRecords);
         pw.println(" mLastSignalStrength=" + mLastSignalStrength);
         pw.println(" mSignalStrength=" + mSignalStrength);
+        pw.println(" mSignalStrengthReceivedCount=" + mSignalStrengthReceivedCount);
+        pw.println(" mSignalStrengthNotifiedCount=" + mSignalStrengthNotifiedCount);
         pw.println(" mLteRsrpBoost=" + mLteRsrpBoost);
         pw.println(" mNrRsrpBoost=" + Arrays.toString(mNrRsrpBoost));
-        pw.println(" mEarfcnPairListForRsrpBoost=" + mEarfcnPairListForRsrpBoost);
-        pw.println(" mNrarfcnRangeListForRsrpBoost=" + mNrarfcnRangeListForRsrpBoost);
+        pw.println(" mEarfcnRangesForRsrpBoost=" + mEarfcnRangesForRsrpBoost);
+        pw.println(" mNrarfcnRangesForRsrpBoost=" + mNrarfcnRangesForRsrpBoost);
         ipw.decreaseIndent();
         ipw.flush();
     }
@@ -1034,6 +1110,8 @@ public class SignalStrengthController extends Handler {
         // TODO(b/177924721): TM#setAlwaysReportSignalStrength will be removed and we will not
         // worry about unset flag which was set by other client.
         mPhone.setAlwaysReportSignalStrength(alwaysReport);
+        mAlwaysReportSignalStrength = alwaysReport;
+        if (alwaysReport) notifyDeferredSignalStrength();
     }
 
     void updateArfcnLists() {
@@ -1042,23 +1120,23 @@ public class SignalStrengthController extends Handler {
                     CarrierConfigManager.KEY_LTE_EARFCNS_RSRP_BOOST_INT, 0);
             String[] earfcnsStringArrayForRsrpBoost = mCarrierConfig.getStringArray(
                     CarrierConfigManager.KEY_BOOSTED_LTE_EARFCNS_STRING_ARRAY);
-            mEarfcnPairListForRsrpBoost = convertEarfcnStringArrayToPairList(
-                    earfcnsStringArrayForRsrpBoost);
+            mEarfcnRangesForRsrpBoost = ArfcnRanges.create(
+                    convertEarfcnStringArrayToPairList(earfcnsStringArrayForRsrpBoost));
 
             mNrRsrpBoost = mCarrierConfig.getIntArray(
                     CarrierConfigManager.KEY_NRARFCNS_RSRP_BOOST_INT_ARRAY);
             String[] nrarfcnsStringArrayForRsrpBoost = mCarrierConfig.getStringArray(
                     CarrierConfigManager.KEY_BOOSTED_NRARFCNS_STRING_ARRAY);
-            mNrarfcnRangeListForRsrpBoost = convertEarfcnStringArrayToPairList(
-                    nrarfcnsStringArrayForRsrpBoost);
+            mNrarfcnRangesForRsrpBoost = ArfcnRanges.create(
+                    convertEarfcnStringArrayToPairList(nrarfcnsStringArrayForRsrpBoost));
 
-            if ((mNrRsrpBoost == null && mNrarfcnRangeListForRsrpBoost != null)
-                    || (mNrRsrpBoost != null && mNrarfcnRangeListForRsrpBoost == null)
-                    || (mNrRsrpBoost != null && mNrarfcnRangeListForRsrpBoost != null
-                    && mNrRsrpBoost.length != mNrarfcnRangeListForRsrpBoost.size())) {
+            if ((mNrRsrpBoost == null && mNrarfcnRangesForRsrpBoost != null)
+                    || (mNrRsrpBoost != null && mNrarfcnRangesForRsrpBoost == null)
+                    || (mNrRsrpBoost != null && mNrarfcnRangesForRsrpBoost != null
+                    && mNrRsrpBoost.length != mNrarfcnRangesForRsrpBoost.size())) {
                 loge("Invalid parameters for NR RSRP boost");
                 mNrRsrpBoost = null;
-                mNrarfcnRangeListForRsrpBoost = null;
+                mNrarfcnRangesForRsrpBoost = null;
             }
         }
     }
@@ -1076,17 +1154,15 @@ public class SignalStrengthController extends Handler {
             switch (cellIdentity.getType()) {
                 case CellInfo.TYPE_LTE:
                     arfcn = ((CellIdentityLte) cellIdentity).getEarfcn();
-                    if (arfcn != INVALID_ARFCN
-                            && containsEarfcnInEarfcnRange(mEarfcnPairListForRsrpBoost,
-                            arfcn) != -1) {
+                    if (arfcn != INVALID_ARFCN && mEarfcnRangesForRsrpBoost != null
+                            && mEarfcnRangesForRsrpBoost.indexOf(arfcn) != -1) {
                         rsrpBoost = mLteRsrpBoost;
                     }
                     break;
                 case CellInfo.TYPE_NR:
                     arfcn = ((CellIdentityNr) cellIdentity).getNrarfcn();
-                    if (arfcn != INVALID_ARFCN) {
-                        int index = containsEarfcnInEarfcnRange(mNrarfcnRangeListForRsrpBoost,
-                                arfcn);
+                    if (arfcn != INVALID_ARFCN && mNrarfcnRangesForRsrpBoost != null) {
+                        int index = mNrarfcnRangesForRsrpBoost.indexOf(arfcn);
                         if (index != -1 && mNrRsrpBoost != null) {
                             rsrpBoost = mNrRsrpBoost[index];
                         }
@@ -1099,26 +1175,6 @@ public class SignalStrengthController extends Handler {
         serviceState.setArfcnRsrpBoost(rsrpBoost);
     }
 
-    /**
-     * Checks if the provided earfcn falls within the range of earfcns.
-     *
-     * return int index in earfcnPairList if earfcn falls within the provided range; -1 otherwise.
-     */
-    private static int containsEarfcnInEarfcnRange(
-            @Nullable ArrayList<Pair<Integer, Integer>> earfcnPairList, int earfcn) {
-        int index = 0;
-        if (earfcnPairList != null) {
-            for (Pair<Integer, Integer> earfcnPair : earfcnPairList) {
-                if ((earfcn >= earfcnPair.first) && (earfcn <= earfcnPair.second)) {
-                    return index;
-                }
-                index++;
-            }
-        }
-
-        return -1;
-    }
-
     /**
      * Convert the earfcnStringArray to list of pairs.
      *
@@ -1171,6 +1227,102 @@ public class SignalStrengthController extends Handler {
         return earfcnPairList;
     }
 
+    /**
+     * Inclusive ARFCN ranges compiled for lookup on every cell identity update.
+     *
+     * The ranges from the carrier config may overlap and are matched in config order, i.e. an
+     * ARFCN belongs to the first range containing it. They are flattened into sorted disjoint
+     * segments, each labelled with the index of the first range covering it, so a lookup is a
+     * binary search without allocation.
+     */
+    @VisibleForTesting
+    static final class ArfcnRanges {
+        @NonNull private final List<Pair<Integer, Integer>> mRanges;
+        // Segment i covers [mSegmentStarts[i], mSegmentEnds[i]] and maps to mSegmentIndexes[i].
+        @NonNull private final int[] mSegmentStarts;
+        @NonNull private final int[] mSegmentEnds;
+        @NonNull private final int[] mSegmentIndexes;
+
+        private ArfcnRanges(@NonNull List<Pair<Integer, Integer>> ranges) {
+            mRanges = ranges;
+
+            // Every segment starts either at a range start or right after a range end.
+            long[] boundaries = new long[ranges.size() * 2];
+            for (int i = 0; i < ranges.size(); i++) {
+                boundaries[2 * i] = ranges.get(i).first;
+                boundaries[2 * i + 1] = ranges.get(i).second + 1L;
+            }
+            Arrays.sort(boundaries);
+
+            int[] starts = new int[boundaries.length];
+            int[] ends = new int[boundaries.length];
+            int[] indexes = new int[boundaries.length];
+            int count = 0;
+            for (int b = 0; b < boundaries.length - 1; b++) {
+                if (boundaries[b] == boundaries[b + 1]) continue;
+                int start = (int) boundaries[b];
+                int end = (int) (boundaries[b + 1] - 1);
+                int index = -1;
+                for (int i = 0; i < ranges.size(); i++) {
+                    if (start >= ranges.get(i).first && start <= ranges.get(i).second) {
+                        index = i;
+                        break;
+                    }
+                }
+                if (index == -1) continue;
+                if (count > 0 && indexes[count - 1] == index && ends[count - 1] == start - 1) {
+                    ends[count - 1] = end;
+                } else {
+                    starts[count] = start;
+                    ends[count] = end;
+                    indexes[count] = index;
+                    count++;
+                }
+            }
+            mSegmentStarts = Arrays.copyOf(starts, count);
+            mSegmentEnds = Arrays.copyOf(ends, count);
+            mSegmentIndexes = Arrays.copyOf(indexes, count);
+        }
+
+        /**
+         * @return the compiled ranges, or {@code null} if {@code ranges} is {@code null}.
+         */
+        @Nullable
+        static ArfcnRanges create(@Nullable List<Pair<Integer, Integer>> ranges) {
+            return ranges == null ? null : new ArfcnRanges(ranges);
+        }
+
+        /** @return the number of configured ranges. */
+        int size() {
+            return mRanges.size();
+        }
+
+        /**
+         * @return the index of the first configured range containing {@code arfcn}, or -1 if
+         * there is none.
+         */
+        int indexOf(int arfcn) {
+            int low = 0;
+            int high = mSegmentStarts.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (arfcn < mSegmentStarts[mid]) {
+                    high = mid - 1;
+                } else if (arfcn > mSegmentEnds[mid]) {
+                    low = mid + 1;
+                } else {
+                    return mSegmentIndexes[mid];
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return mRanges.toString();
+        }
+    }
+
     private void onCarrierConfigurationChanged(int slotIndex) {
         if (slotIndex != mPhone.getPhoneId()) return;
 
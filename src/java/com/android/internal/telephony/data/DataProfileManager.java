@@ -42,10 +42,13 @@ import android.telephony.data.ApnSetting;
 import android.telephony.data.DataProfile;
 import android.telephony.data.TrafficDescriptor;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.IndentingPrintWriter;
 import android.util.LocalLog;
 import android.util.LruCache;
+import android.util.Pair;
+import android.util.SparseArray;
 
 import com.android.internal.telephony.Phone;
 import com.android.internal.telephony.data.DataConfigManager.DataConfigManagerCallback;
@@ -58,6 +61,7 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
@@ -101,6 +105,23 @@ public class DataProfileManager extends Handler {
     @NonNull
     private final List<DataProfile> mAllDataProfiles = new ArrayList<>();
 
+    /**
+     * Data profiles from {@link #mAllDataProfiles} that can handle an APN type, keyed by APN type.
+     * Built on demand and cleared whenever {@link #mAllDataProfiles} changes.
+     */
+    private final SparseArray<List<DataProfile>> mDataProfilesByApnType = new SparseArray<>();
+
+    /**
+     * The data profiles and their preferred state last sent to the modem, along with the roaming
+     * state. {@code null} if the data profiles must be sent again regardless of changes.
+     */
+    @Nullable
+    private List<Pair<DataProfile, Boolean>> mDataProfilesAtModem = null;
+    private boolean mDataProfilesAtModemRoaming;
+
+    /** The number of times sending data profiles to the modem was skipped as nothing changed. */
+    private int mSkippedModemDataProfileUpdates = 0;
+
     /** The data profile used for initial attach. */
     @Nullable
     private DataProfile mInitialAttachDataProfile = null;
@@ -214,6 +235,8 @@ public class DataProfileManager extends Handler {
         switch (msg.what) {
             case EVENT_SIM_REFRESH:
                 log("Update data profiles due to SIM refresh.");
+                // The modem might have reset its data profiles, always send them again.
+                mDataProfilesAtModem = null;
                 updateDataProfiles(!mDataConfigManager.allowClearInitialAttachDataProfile()
                         /*force update IA*/);
                 break;
@@ -232,6 +255,8 @@ public class DataProfileManager extends Handler {
      */
     private void onCarrierConfigUpdated() {
         log("Update data profiles due to carrier config updated.");
+        // The modem might have reset its data profiles, always send them again.
+        mDataProfilesAtModem = null;
         updateDataProfiles(!mDataConfigManager.allowClearInitialAttachDataProfile()
                 /*force update IA*/);
     }
@@ -369,9 +394,11 @@ public class DataProfileManager extends Handler {
 
         boolean profilesChanged = false;
         if (mAllDataProfiles.size() != profiles.size() || !mAllDataProfiles.containsAll(profiles)) {
-            log("Data profiles changed.");
+            logl("Data profiles changed. " + getDataProfilesChangeString(mAllDataProfiles,
+                    profiles));
             mAllDataProfiles.clear();
             mAllDataProfiles.addAll(profiles);
+            mDataProfilesByApnType.clear();
             profilesChanged = true;
         }
 
@@ -619,12 +646,57 @@ public class DataProfileManager extends Handler {
     }
 
     /**
-     * Update the data profiles at modem.
+     * Update the data profiles at modem. Nothing is sent if the data profiles, their preferred
+     * state and the roaming state are the same as the last time they were sent.
      */
     private void updateDataProfilesAtModem() {
+        boolean isRoaming = mPhone.getServiceState().getDataRoamingFromRegistration();
+        List<Pair<DataProfile, Boolean>> dataProfiles = new ArrayList<>(mAllDataProfiles.size());
+        for (DataProfile dp : mAllDataProfiles) {
+            dataProfiles.add(new Pair<>(dp, dp.isPreferred()));
+        }
+        if (dataProfiles.equals(mDataProfilesAtModem) && isRoaming == mDataProfilesAtModemRoaming) {
+            mSkippedModemDataProfileUpdates++;
+            log("updateDataProfilesAtModem: data profiles not changed, skipped "
+                    + mSkippedModemDataProfileUpdates + " times.");
+            return;
+        }
+        mDataProfilesAtModem = dataProfiles;
+        mDataProfilesAtModemRoaming = isRoaming;
+
         log("updateDataProfilesAtModem: set " + mAllDataProfiles.size() + " data profiles.");
-        mWwanDataServiceManager.setDataProfile(mAllDataProfiles,
-                mPhone.getServiceState().getDataRoamingFromRegistration(), null);
+        mWwanDataServiceManager.setDataProfile(mAllDataProfiles, isRoaming, null);
+    }
+
+    /**
+     * Describe the difference between two lists of data profiles. Data profiles are matched by
+     * APN id, so a data profile whose APN setting was edited is reported as modified.
+     *
+     * @param oldProfiles The old data profiles.
+     * @param newProfiles The new data profiles.
+     * @return The description, for logging.
+     */
+    @NonNull
+    private static String getDataProfilesChangeString(@NonNull List<DataProfile> oldProfiles,
+            @NonNull List<DataProfile> newProfiles) {
+        Set<DataProfile> removed = new ArraySet<>(oldProfiles);
+        newProfiles.forEach(removed::remove);
+        Set<DataProfile> added = new ArraySet<>(newProfiles);
+        oldProfiles.forEach(added::remove);
+
+        Set<Integer> removedApnIds = new ArraySet<>();
+        for (DataProfile dp : removed) {
+            if (dp.getApnSetting() != null) removedApnIds.add(dp.getApnSetting().getId());
+        }
+        int modified = 0;
+        for (DataProfile dp : added) {
+            if (dp.getApnSetting() != null
+                    && removedApnIds.contains(dp.getApnSetting().getId())) {
+                modified++;
+            }
+        }
+        return "added=" + (added.size() - modified) + ", removed=" + (removed.size() - modified)
+                + ", modified=" + modified;
     }
 
     /**
@@ -785,7 +857,7 @@ public class DataProfileManager extends Handler {
 
         // Filter out the data profile that can't satisfy the request.
         // Preferred data profile should be returned in the top of the list.
-        List<DataProfile> dataProfiles = mAllDataProfiles.stream()
+        List<DataProfile> dataProfiles = getCandidateDataProfiles(networkRequest).stream()
                 .filter(networkRequest::canBeSatisfiedBy)
                 // The longest time hasn't used data profile will be in the front so all the data
                 // profiles can be tried.
@@ -860,6 +932,56 @@ public class DataProfileManager extends Handler {
         return dataProfiles.get(0).getApnSetting();
     }
 
+    /**
+     * Get the data profiles that might satisfy the network request, in the same order as in
+     * {@link #mAllDataProfiles}. A network request with APN type capabilities can only be
+     * satisfied by a data profile that can handle all of them, or by the OS/App id of the data
+     * profile, so only the data profiles for one of its APN types need to be checked.
+     *
+     * @param networkRequest The network request.
+     * @return The data profiles to check with
+     * {@link TelephonyNetworkRequest#canBeSatisfiedBy(DataProfile)}.
+     */
+    @NonNull
+    private List<DataProfile> getCandidateDataProfiles(
+            @NonNull TelephonyNetworkRequest networkRequest) {
+        for (int capability : networkRequest.getCapabilities()) {
+            int apnType = DataUtils.networkCapabilityToApnType(capability);
+            if (apnType == ApnSetting.TYPE_NONE) continue;
+            // Enterprise requests have internet capability but are not satisfied by default type.
+            // See TelephonyNetworkRequest#canBeSatisfiedBy.
+            if (apnType == ApnSetting.TYPE_DEFAULT && networkRequest.hasCapability(
+                    NetworkCapabilities.NET_CAPABILITY_ENTERPRISE)) {
+                continue;
+            }
+            return getDataProfilesForApnType(apnType);
+        }
+        return mAllDataProfiles;
+    }
+
+    /**
+     * Get the data profiles whose APN setting can handle the APN type, or which have an OS/App id.
+     *
+     * @param apnType The APN type.
+     * @return The data profiles, in the same order as in {@link #mAllDataProfiles}.
+     */
+    @NonNull
+    private List<DataProfile> getDataProfilesForApnType(@Annotation.ApnType int apnType) {
+        List<DataProfile> dataProfiles = mDataProfilesByApnType.get(apnType);
+        if (dataProfiles == null) {
+            dataProfiles = new ArrayList<>();
+            for (DataProfile dp : mAllDataProfiles) {
+                if ((dp.getApnSetting() != null && dp.getApnSetting().canHandleType(apnType))
+                        || (dp.getTrafficDescriptor() != null
+                        && dp.getTrafficDescriptor().getOsAppId() != null)) {
+                    dataProfiles.add(dp);
+                }
+            }
+            mDataProfilesByApnType.put(apnType, dataProfiles);
+        }
+        return dataProfiles;
+    }
+
     /**
      * Check if the data profile is essentially the preferred data profile. The non-essential
      * elements include e.g.APN Id.
@@ -911,26 +1033,47 @@ public class DataProfileManager extends Handler {
      * Dedupe the similar data profiles.
      */
     private void dedupeDataProfiles(@NonNull List<DataProfile> dataProfiles) {
-        int i = 0;
-        while (i < dataProfiles.size() - 1) {
-            DataProfile first = dataProfiles.get(i);
-            int j = i + 1;
-            while (j < dataProfiles.size()) {
-                DataProfile second = dataProfiles.get(j);
-                DataProfile merged = mergeDataProfiles(first, second);
-                if (merged != null) {
-                    log("Created a merged profile " + merged + " from " + first + " and "
-                            + second);
-                    loge("Merging data profiles will not be supported anymore. Please "
-                            + "directly configure the merged profile " + merged + " in the APN "
-                            + "config.");
-                    dataProfiles.set(i, merged);
-                    dataProfiles.remove(j);
-                } else {
-                    j++;
+        // Only data profiles with the same traffic descriptor and APN name can be merged (see
+        // mergeDataProfiles), so group them first and only compare within each group.
+        Map<Pair<TrafficDescriptor, String>, List<Integer>> groups = new ArrayMap<>();
+        boolean hasCandidates = false;
+        for (int i = 0; i < dataProfiles.size(); i++) {
+            DataProfile dp = dataProfiles.get(i);
+            if (dp.getApnSetting() == null) continue;
+            List<Integer> group = groups.computeIfAbsent(new Pair<>(dp.getTrafficDescriptor(),
+                    dp.getApnSetting().getApnName()), k -> new ArrayList<>());
+            group.add(i);
+            hasCandidates |= group.size() > 1;
+        }
+        if (!hasCandidates) return;
+
+        boolean removed = false;
+        for (List<Integer> group : groups.values()) {
+            int i = 0;
+            while (i < group.size() - 1) {
+                DataProfile first = dataProfiles.get(group.get(i));
+                int j = i + 1;
+                while (j < group.size()) {
+                    DataProfile second = dataProfiles.get(group.get(j));
+                    DataProfile merged = mergeDataProfiles(first, second);
+                    if (merged != null) {
+                        log("Created a merged profile " + merged + " from " + first + " and "
+                                + second);
+                        loge("Merging data profiles will not be supported anymore. Please "
+                                + "directly configure the merged profile " + merged + " in the "
+                                + "APN config.");
+                        dataProfiles.set(group.get(i), merged);
+                        dataProfiles.set(group.remove(j), null);
+                        removed = true;
+                    } else {
+                        j++;
+                    }
                 }
+                i++;
             }
-            i++;
+        }
+        if (removed) {
+            dataProfiles.removeIf(Objects::isNull);
         }
     }
 
@@ -1211,6 +1354,7 @@ public class DataProfileManager extends Handler {
         mLastInternetDataProfiles.snapshot().forEach((key, value) -> pw.println(key + ":" + value));
         pw.decreaseIndent();
         pw.println("Initial attach data profile=" + mInitialAttachDataProfile);
+        pw.println("Skipped modem data profile updates=" + mSkippedModemDataProfileUpdates);
         pw.println("isTetheringDataProfileExisting=" + isTetheringDataProfileExisting(
                 TelephonyManager.NETWORK_TYPE_LTE));
         pw.println("Permanent failed profiles=");
@@ -512,6 +512,23 @@ public class DomainSelectionController {
         }
     }
 
+    /**
+     * Binds to the {@link DomainSelectionService} right away if the binding was lost, instead of
+     * waiting for the next rebind attempt of the backoff timer.
+     *
+     * @return {@code true} if the service is bound or in the process of being bound,
+     *         {@code false} otherwise.
+     */
+    public boolean ensureBound() {
+        synchronized (mLock) {
+            if (mUnbind || mComponentName == null) return false;
+            if (mIsBound) return true;
+            logi("ensureBound: rebinding now, currentDelay=" + getBindDelay());
+            stopBackoffTimer();
+            return bind();
+        }
+    }
+
     /**
      * Unbinds the service.
      */
@@ -199,6 +199,16 @@ public class DomainSelectionResolver {
         }
     }
 
+    /**
+     * Requests the {@link DomainSelectionController} to bind to the domain selection service
+     * right away if the binding was lost, so that the service is ready when a domain needs to
+     * be selected, e.g. for an emergency call being dialed.
+     */
+    public void ensureServiceBound() {
+        if (mController == null) return;
+        mController.ensureBound();
+    }
+
     /**
      * Sets the component name of domain selection service to be bound.
      *
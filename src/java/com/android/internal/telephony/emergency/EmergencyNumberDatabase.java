@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.emergency;
+
+import android.annotation.NonNull;
+import android.content.res.AssetManager;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.phone.ecc.nano.ProtobufEccData;
+import com.android.phone.ecc.nano.ProtobufEccData.EccInfo;
+import com.android.telephony.Rlog;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An emergency number database, indexed by country.
+ *
+ * The asset and OTA databases are shared by all {@link EmergencyNumberTracker}s of the process,
+ * so that they are decompressed and parsed once instead of on every country change of every
+ * phone. The asset database is reloaded only if the assets change, and the OTA database only if
+ * its file changes.
+ */
+final class EmergencyNumberDatabase {
+    private static final String TAG = EmergencyNumberDatabase.class.getSimpleName();
+
+    private static final String EMERGENCY_NUMBER_DB_ASSETS_FILE = "eccdata";
+
+    @GuardedBy("EmergencyNumberDatabase.class")
+    private static AssetManager sAssetManager;
+    @GuardedBy("EmergencyNumberDatabase.class")
+    private static EmergencyNumberDatabase sAssetDatabase;
+
+    @GuardedBy("EmergencyNumberDatabase.class")
+    private static String sOtaFilePath;
+    @GuardedBy("EmergencyNumberDatabase.class")
+    private static long sOtaFileLastModified;
+    @GuardedBy("EmergencyNumberDatabase.class")
+    private static long sOtaFileLength;
+    @GuardedBy("EmergencyNumberDatabase.class")
+    private static EmergencyNumberDatabase sOtaDatabase;
+
+    /** The revision of the database. */
+    final int revision;
+
+    /** The emergency numbers, keyed by upper case country ISO. */
+    private final Map<String, List<EccInfo>> mEccInfosByCountry;
+
+    private EmergencyNumberDatabase(@NonNull ProtobufEccData.AllInfo allEccMessages) {
+        revision = allEccMessages.revision;
+        mEccInfosByCountry = new ArrayMap<>(allEccMessages.countries.length);
+        for (ProtobufEccData.CountryInfo countryEccInfo : allEccMessages.countries) {
+            List<EccInfo> eccInfos = mEccInfosByCountry.get(countryEccInfo.isoCode);
+            if (eccInfos == null) {
+                eccInfos = new ArrayList<>(countryEccInfo.eccs.length);
+                mEccInfosByCountry.put(countryEccInfo.isoCode, eccInfos);
+            }
+            Collections.addAll(eccInfos, countryEccInfo.eccs);
+        }
+    }
+
+    /**
+     * @return the emergency numbers of the country, in database order, or an empty list if the
+     * country is not in the database.
+     */
+    @NonNull
+    List<EccInfo> getEccInfos(@NonNull String countryIso) {
+        List<EccInfo> eccInfos = mEccInfosByCountry.get(countryIso.toUpperCase(Locale.ROOT));
+        return eccInfos != null ? Collections.unmodifiableList(eccInfos)
+                : Collections.emptyList();
+    }
+
+    /**
+     * @return the database in the assets, loading it if it was not loaded from these assets yet.
+     * @throws IOException if the database cannot be read.
+     */
+    @NonNull
+    static synchronized EmergencyNumberDatabase getAssetDatabase(
+            @NonNull AssetManager assets) throws IOException {
+        if (sAssetDatabase == null || sAssetManager != assets) {
+            long start = SystemClock.elapsedRealtime();
+            // try-with-resource. The 2 streams are auto closeable.
+            try (BufferedInputStream inputStream = new BufferedInputStream(
+                    assets.open(EMERGENCY_NUMBER_DB_ASSETS_FILE));
+                 GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream)) {
+                sAssetDatabase = parse(gzipInputStream);
+            }
+            sAssetManager = assets;
+            Rlog.d(TAG, "Loaded asset emergency database. Ver: " + sAssetDatabase.revision
+                    + " in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        }
+        return sAssetDatabase;
+    }
+
+    /**
+     * @return the OTA database in the file, loading it if the file changed since it was last
+     * loaded.
+     * @throws IOException if the database cannot be read.
+     */
+    @NonNull
+    static synchronized EmergencyNumberDatabase getOtaDatabase(@NonNull File file)
+            throws IOException {
+        String path = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if (sOtaDatabase == null || !path.equals(sOtaFilePath)
+                || lastModified != sOtaFileLastModified || length != sOtaFileLength) {
+            sOtaDatabase = null;
+            long start = SystemClock.elapsedRealtime();
+            // try-with-resource. Those 3 streams are all auto closeable.
+            try (FileInputStream fileInputStream = new FileInputStream(file);
+                 BufferedInputStream inputStream = new BufferedInputStream(fileInputStream);
+                 GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream)) {
+                sOtaDatabase = parse(gzipInputStream);
+            }
+            sOtaFilePath = path;
+            sOtaFileLastModified = lastModified;
+            sOtaFileLength = length;
+            Rlog.d(TAG, "Loaded ota emergency database. Ver: " + sOtaDatabase.revision
+                    + " in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        }
+        return sOtaDatabase;
+    }
+
+    private static EmergencyNumberDatabase parse(InputStream inputStream) throws IOException {
+        return new EmergencyNumberDatabase(
+                ProtobufEccData.AllInfo.parseFrom(readInputStreamToByteArray(inputStream)));
+    }
+
+    /**
+     * Util function to convert inputStream to byte array before parsing proto data.
+     */
+    private static byte[] readInputStreamToByteArray(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int nRead;
+        int size = 16 * 1024; // Read 16k chunks
+        byte[] data = new byte[size];
+        while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
+            buffer.write(data, 0, nRead);
+        }
+        buffer.flush();
+        return buffer.toByteArray();
+    }
+}
@@ -57,19 +57,14 @@ import com.android.internal.telephony.metrics.TelephonyMetrics;
 import com.android.internal.telephony.nano.PersistAtomsProto;
 import com.android.internal.telephony.subscription.SubscriptionManagerService;
 import com.android.internal.util.IndentingPrintWriter;
-import com.android.phone.ecc.nano.ProtobufEccData;
 import com.android.phone.ecc.nano.ProtobufEccData.EccInfo;
 import com.android.telephony.Rlog;
 
 import com.google.i18n.phonenumbers.ShortNumberInfo;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileDescriptor;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -78,7 +73,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.GZIPInputStream;
 
 /**
  * Emergency Number Tracker that handles update of emergency number list from RIL and emergency
@@ -126,13 +120,13 @@ public class EmergencyNumberTracker extends Handler {
     public boolean mIsCountrySetByAnotherSub = false;
     private String[] mEmergencyNumberPrefix = new String[0];
 
-    private static final String EMERGENCY_NUMBER_DB_ASSETS_FILE = "eccdata";
-
     private List<EmergencyNumber> mEmergencyNumberListFromDatabase = new ArrayList<>();
     private List<EmergencyNumber> mEmergencyNumberListFromRadio = new ArrayList<>();
     private List<EmergencyNumber> mEmergencyNumberListWithPrefix = new ArrayList<>();
     private List<EmergencyNumber> mEmergencyNumberListFromTestMode = new ArrayList<>();
     private List<EmergencyNumber> mEmergencyNumberList = new ArrayList<>();
+    /** {@link #mEmergencyNumberList} indexed by number, in list order. */
+    private Map<String, List<EmergencyNumber>> mEmergencyNumberIndex = Collections.emptyMap();
 
     private final LocalLog mEmergencyNumberListDatabaseLocalLog = new LocalLog(16);
     private final LocalLog mEmergencyNumberListRadioLocalLog = new LocalLog(16);
@@ -546,27 +540,20 @@ public class EmergencyNumberTracker extends Handler {
 
         // Read the Asset emergency number database
         List<EmergencyNumber> updatedAssetEmergencyNumberList = new ArrayList<>();
-        // try-with-resource. The 2 streams are auto closeable.
-        try (BufferedInputStream inputStream = new BufferedInputStream(
-                mPhone.getContext().getAssets().open(EMERGENCY_NUMBER_DB_ASSETS_FILE));
-             GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream)) {
-            ProtobufEccData.AllInfo allEccMessages = ProtobufEccData.AllInfo.parseFrom(
-                    readInputStreamToByteArray(gzipInputStream));
-            assetsDatabaseVersion = allEccMessages.revision;
+        try {
+            EmergencyNumberDatabase database = EmergencyNumberDatabase.getAssetDatabase(
+                    mPhone.getContext().getAssets());
+            assetsDatabaseVersion = database.revision;
             logd(countryIso + " asset emergency database is loaded. Ver: " + assetsDatabaseVersion
                     + " Phone Id: " + mPhone.getPhoneId() + " countryIso: " + countryIso);
-            for (ProtobufEccData.CountryInfo countryEccInfo : allEccMessages.countries) {
-                if (countryEccInfo.isoCode.equals(countryIso.toUpperCase(Locale.ROOT))) {
-                    for (ProtobufEccData.EccInfo eccInfo : countryEccInfo.eccs) {
-                        int emergencyCallRouting = EmergencyNumber.EMERGENCY_CALL_ROUTING_UNKNOWN;
-                        if (!shouldEmergencyNumberRoutingFromDbBeIgnored()) {
-                            emergencyCallRouting = getRoutingInfoFromDB(eccInfo,
-                                    assetNormalRoutedNumbers);
-                        }
-                        updatedAssetEmergencyNumberList.add(convertEmergencyNumberFromEccInfo(
-                                eccInfo, countryIso, emergencyCallRouting));
-                    }
+            for (EccInfo eccInfo : database.getEccInfos(countryIso)) {
+                int emergencyCallRouting = EmergencyNumber.EMERGENCY_CALL_ROUTING_UNKNOWN;
+                if (!shouldEmergencyNumberRoutingFromDbBeIgnored()) {
+                    emergencyCallRouting = getRoutingInfoFromDB(eccInfo,
+                            assetNormalRoutedNumbers);
                 }
+                updatedAssetEmergencyNumberList.add(convertEmergencyNumberFromEccInfo(
+                        eccInfo, countryIso, emergencyCallRouting));
             }
             EmergencyNumber.mergeSameNumbersInEmergencyNumberList(updatedAssetEmergencyNumberList);
         } catch (IOException ex) {
@@ -593,7 +580,6 @@ public class EmergencyNumberTracker extends Handler {
     }
 
     private int cacheOtaEmergencyNumberDatabase() {
-        ProtobufEccData.AllInfo allEccMessages = null;
         int otaDatabaseVersion = INVALID_DATABASE_VERSION;
         Map<String, Set<String>> otaNormalRoutedNumbers = new ArrayMap<>();
 
@@ -614,27 +600,19 @@ public class EmergencyNumberTracker extends Handler {
             }
         }
 
-        // try-with-resource. Those 3 streams are all auto closeable.
-        try (FileInputStream fileInputStream = new FileInputStream(file);
-             BufferedInputStream inputStream = new BufferedInputStream(fileInputStream);
-             GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream)) {
-            allEccMessages = ProtobufEccData.AllInfo.parseFrom(
-                    readInputStreamToByteArray(gzipInputStream));
+        try {
+            EmergencyNumberDatabase database = EmergencyNumberDatabase.getOtaDatabase(file);
             String countryIso = getLastKnownEmergencyCountryIso();
+            otaDatabaseVersion = database.revision;
             logd(countryIso + " ota emergency database is loaded. Ver: " + otaDatabaseVersion);
-            otaDatabaseVersion = allEccMessages.revision;
-            for (ProtobufEccData.CountryInfo countryEccInfo : allEccMessages.countries) {
-                if (countryEccInfo.isoCode.equals(countryIso.toUpperCase(Locale.ROOT))) {
-                    for (ProtobufEccData.EccInfo eccInfo : countryEccInfo.eccs) {
-                        int emergencyCallRouting = EmergencyNumber.EMERGENCY_CALL_ROUTING_UNKNOWN;
-                        if (!shouldEmergencyNumberRoutingFromDbBeIgnored()) {
-                            emergencyCallRouting = getRoutingInfoFromDB(eccInfo,
-                                    otaNormalRoutedNumbers);
-                        }
-                        updatedOtaEmergencyNumberList.add(convertEmergencyNumberFromEccInfo(
-                                eccInfo, countryIso, emergencyCallRouting));
-                    }
+            for (EccInfo eccInfo : database.getEccInfos(countryIso)) {
+                int emergencyCallRouting = EmergencyNumber.EMERGENCY_CALL_ROUTING_UNKNOWN;
+                if (!shouldEmergencyNumberRoutingFromDbBeIgnored()) {
+                    emergencyCallRouting = getRoutingInfoFromDB(eccInfo,
+                            otaNormalRoutedNumbers);
                 }
+                updatedOtaEmergencyNumberList.add(convertEmergencyNumberFromEccInfo(
+                        eccInfo, countryIso, emergencyCallRouting));
             }
             EmergencyNumber.mergeSameNumbersInEmergencyNumberList(updatedOtaEmergencyNumberList);
         } catch (IOException ex) {
@@ -653,21 +631,6 @@ public class EmergencyNumberTracker extends Handler {
         return otaDatabaseVersion;
     }
 
-    /**
-     * Util function to convert inputStream to byte array before parsing proto data.
-     */
-    private static byte[] readInputStreamToByteArray(InputStream inputStream) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        int size = 16 * 1024; // Read 16k chunks
-        byte[] data = new byte[size];
-        while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
-        }
-        buffer.flush();
-        return buffer.toByteArray();
-    }
-
     private void updateRadioEmergencyNumberListAndNotify(
             List<EmergencyNumber> emergencyNumberListRadio) {
         Collections.sort(emergencyNumberListRadio);
@@ -799,9 +762,51 @@ public class EmergencyNumberTracker extends Handler {
         } else {
             EmergencyNumber.mergeSameNumbersInEmergencyNumberList(mergedEmergencyNumberList, true);
         }
+        mEmergencyNumberIndex = indexEmergencyNumbers(mergedEmergencyNumberList);
         mEmergencyNumberList = mergedEmergencyNumberList;
     }
 
+    private static Map<String, List<EmergencyNumber>> indexEmergencyNumbers(
+            List<EmergencyNumber> emergencyNumberList) {
+        Map<String, List<EmergencyNumber>> index = new ArrayMap<>(emergencyNumberList.size());
+        for (EmergencyNumber num : emergencyNumberList) {
+            List<EmergencyNumber> numbers = index.get(num.getNumber());
+            if (numbers == null) {
+                numbers = new ArrayList<>(1);
+                index.put(num.getNumber(), numbers);
+            }
+            numbers.add(num);
+        }
+        return index;
+    }
+
+    /**
+     * Get the emergency numbers with the given number, as they are in
+     * {@link #getEmergencyNumberList()}.
+     *
+     * @param number the number, without separators.
+     */
+    private List<EmergencyNumber> getEmergencyNumbersForNumber(String number) {
+        List<EmergencyNumber> emergencyNumbers;
+        if (!mEmergencyNumberListFromRadio.isEmpty()) {
+            emergencyNumbers = mEmergencyNumberIndex.get(number);
+            if (emergencyNumbers == null) {
+                return Collections.emptyList();
+            }
+        } else {
+            emergencyNumbers = new ArrayList<>();
+            for (EmergencyNumber num : getEmergencyNumberListFromEccListDatabaseAndTest()) {
+                if (num.getNumber().equals(number)) {
+                    emergencyNumbers.add(num);
+                }
+            }
+        }
+        if (shouldAdjustForRouting()) {
+            return adjustRoutingForEmergencyNumbers(emergencyNumbers);
+        }
+        return emergencyNumbers;
+    }
+
     /**
      * Get the emergency number list.
      *
@@ -915,11 +920,9 @@ public class EmergencyNumberTracker extends Handler {
         number = PhoneNumberUtils.extractNetworkPortionAlt(number);
 
         if (!mEmergencyNumberListFromRadio.isEmpty()) {
-            for (EmergencyNumber num : mEmergencyNumberList) {
-                if (num.getNumber().equals(number)) {
-                    logd("Found in mEmergencyNumberList");
-                    return true;
-                }
+            if (mEmergencyNumberIndex.containsKey(number)) {
+                logd("Found in mEmergencyNumberList");
+                return true;
             }
             return false;
         } else {
@@ -941,12 +944,8 @@ public class EmergencyNumberTracker extends Handler {
      */
     public EmergencyNumber getEmergencyNumber(String emergencyNumber) {
         emergencyNumber = PhoneNumberUtils.stripSeparators(emergencyNumber);
-        for (EmergencyNumber num : getEmergencyNumberList()) {
-            if (num.getNumber().equals(emergencyNumber)) {
-                return num;
-            }
-        }
-        return null;
+        List<EmergencyNumber> emergencyNumbers = getEmergencyNumbersForNumber(emergencyNumber);
+        return emergencyNumbers.isEmpty() ? null : emergencyNumbers.get(0);
     }
 
     /**
@@ -960,10 +959,8 @@ public class EmergencyNumberTracker extends Handler {
      * @return the list of emergency numbers matching.
      */
     public List<EmergencyNumber> getEmergencyNumbers(String emergencyNumber) {
-        final String toFind = PhoneNumberUtils.stripSeparators(emergencyNumber);
-        return getEmergencyNumberList().stream()
-                .filter(num -> num.getNumber().equals(toFind))
-                .toList();
+        return Collections.unmodifiableList(getEmergencyNumbersForNumber(
+                PhoneNumberUtils.stripSeparators(emergencyNumber)));
     }
 
     /**
@@ -977,12 +974,10 @@ public class EmergencyNumberTracker extends Handler {
      */
     public @EmergencyServiceCategories int getEmergencyServiceCategories(String emergencyNumber) {
         emergencyNumber = PhoneNumberUtils.stripSeparators(emergencyNumber);
-        for (EmergencyNumber num : getEmergencyNumberList()) {
-            if (num.getNumber().equals(emergencyNumber)) {
-                if (num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_NETWORK_SIGNALING)
-                        || num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_SIM)) {
-                    return num.getEmergencyServiceCategoryBitmask();
-                }
+        for (EmergencyNumber num : getEmergencyNumbersForNumber(emergencyNumber)) {
+            if (num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_NETWORK_SIGNALING)
+                    || num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_SIM)) {
+                return num.getEmergencyServiceCategoryBitmask();
             }
         }
         return EmergencyNumber.EMERGENCY_SERVICE_CATEGORY_UNSPECIFIED;
@@ -997,11 +992,9 @@ public class EmergencyNumberTracker extends Handler {
      */
     public @EmergencyCallRouting int getEmergencyCallRouting(String emergencyNumber) {
         emergencyNumber = PhoneNumberUtils.stripSeparators(emergencyNumber);
-        for (EmergencyNumber num : getEmergencyNumberList()) {
-            if (num.getNumber().equals(emergencyNumber)) {
-                if (num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_DATABASE)) {
-                    return num.getEmergencyCallRouting();
-                }
+        for (EmergencyNumber num : getEmergencyNumbersForNumber(emergencyNumber)) {
+            if (num.isFromSources(EmergencyNumber.EMERGENCY_NUMBER_SOURCE_DATABASE)) {
+                return num.getEmergencyCallRouting();
             }
         }
         return EmergencyNumber.EMERGENCY_CALL_ROUTING_UNKNOWN;
@@ -65,6 +65,7 @@ import com.android.internal.telephony.PhoneConstants;
 import com.android.internal.telephony.PhoneFactory;
 import com.android.internal.telephony.TelephonyIntents;
 import com.android.internal.telephony.data.PhoneSwitcher;
+import com.android.internal.telephony.domainselection.DomainSelectionResolver;
 import com.android.internal.telephony.imsphone.ImsPhoneConnection;
 import com.android.internal.telephony.satellite.SatelliteController;
 import com.android.telephony.Rlog;
@@ -129,6 +130,24 @@ public class EmergencyStateTracker {
 
     private static final String KEY_NO_SIM_ECBM_SUPPORT = "no_sim_ecbm_support";
 
+    /** The stages of the emergency call setup, in order. */
+    @VisibleForTesting
+    public static final int CALL_SETUP_STAGE_START = 0;
+    @VisibleForTesting
+    public static final int CALL_SETUP_STAGE_RADIO_READY = 1;
+    @VisibleForTesting
+    public static final int CALL_SETUP_STAGE_DDS_SWITCHED = 2;
+    @VisibleForTesting
+    public static final int CALL_SETUP_STAGE_EMERGENCY_MODE_SET = 3;
+    @VisibleForTesting
+    public static final int CALL_SETUP_STAGE_TRANSPORT_SELECTED = 4;
+    @VisibleForTesting
+    public static final int CALL_SETUP_STAGE_DIALED = 5;
+    private static final int CALL_SETUP_STAGE_COUNT = 6;
+    private static final String[] CALL_SETUP_STAGE_NAMES =
+            {"start", "radioReady", "ddsSwitched", "emergencyModeSet", "transportSelected",
+                    "dialed"};
+
     private static EmergencyStateTracker INSTANCE = null;
 
     private final Context mContext;
@@ -164,6 +183,8 @@ public class EmergencyStateTracker {
     private int mOngoingCallProperties;
     private boolean mSentEmergencyCallState;
     private android.telecom.Connection mNormalRoutingEmergencyConnection;
+    // Elapsed realtime when each CALL_SETUP_STAGE_* of the ongoing call was reached, or 0.
+    private final long[] mCallSetupStageTimes = new long[CALL_SETUP_STAGE_COUNT];
 
     /** For emergency SMS */
     private final Set<String> mOngoingEmergencySmsIds = new ArraySet<>();
@@ -287,6 +308,9 @@ public class EmergencyStateTracker {
                     Integer emergencyType = (Integer) ar.userObj;
                     Rlog.v(TAG, "MSG_SET_EMERGENCY_MODE_DONE for "
                             + emergencyTypeToString(emergencyType));
+                    if (emergencyType == EMERGENCY_TYPE_CALL) {
+                        onCallSetupStage(CALL_SETUP_STAGE_EMERGENCY_MODE_SET);
+                    }
                     if (ar.exception == null) {
                         mLastEmergencyRegistrationResult = (EmergencyRegistrationResult) ar.result;
                     } else {
@@ -603,6 +627,9 @@ public class EmergencyStateTracker {
 
         mOngoingCallProperties = 0;
         mCallEmergencyModeFuture = new CompletableFuture<>();
+        Arrays.fill(mCallSetupStageTimes, 0);
+        onCallSetupStage(CALL_SETUP_STAGE_START);
+        prewarmDomainSelection();
 
         if (mSmsPhone != null) {
             mIsEmergencyCallStartedDuringEmergencySms = true;
@@ -703,6 +730,51 @@ public class EmergencyStateTracker {
         maybeNotifyTransportChangeCompleted(EMERGENCY_TYPE_CALL, true);
     }
 
+    /**
+     * Records the time the ongoing emergency call reached the given setup stage, the first time
+     * it does, and logs the time of every stage once the call is dialed.
+     */
+    private void onCallSetupStage(int stage) {
+        long start = mCallSetupStageTimes[CALL_SETUP_STAGE_START];
+        if ((start == 0 && stage != CALL_SETUP_STAGE_START) || mCallSetupStageTimes[stage] != 0) {
+            return;
+        }
+        mCallSetupStageTimes[stage] = SystemClock.elapsedRealtime();
+        if (stage == CALL_SETUP_STAGE_DIALED) {
+            StringBuilder sb = new StringBuilder("Emergency call setup:");
+            for (int i = CALL_SETUP_STAGE_RADIO_READY; i < CALL_SETUP_STAGE_COUNT; i++) {
+                sb.append(' ').append(CALL_SETUP_STAGE_NAMES[i]).append('=');
+                if (mCallSetupStageTimes[i] == 0) {
+                    sb.append('-');
+                } else {
+                    sb.append(mCallSetupStageTimes[i] - start).append("ms");
+                }
+            }
+            Rlog.i(TAG, sb.toString());
+        }
+    }
+
+    /**
+     * @return the time in ms from the start of the ongoing emergency call to the given setup
+     * stage, or -1 if the stage was not reached.
+     */
+    @VisibleForTesting
+    public long getCallSetupStageDelayMillis(int stage) {
+        long start = mCallSetupStageTimes[CALL_SETUP_STAGE_START];
+        if (start == 0 || mCallSetupStageTimes[stage] == 0) {
+            return -1;
+        }
+        return mCallSetupStageTimes[stage] - start;
+    }
+
+    /**
+     * Prepares the domain selection of the emergency call while the radio is turned on and the
+     * DDS is switched, by rebinding the domain selection service if the binding was lost.
+     */
+    private void prewarmDomainSelection() {
+        DomainSelectionResolver.getInstance().ensureServiceBound();
+    }
+
     private void clearEmergencyCallInfo() {
         mEmergencyCallDomain = NetworkRegistrationInfo.DOMAIN_UNKNOWN;
         mIsTestEmergencyNumber = false;
@@ -714,8 +786,14 @@ public class EmergencyStateTracker {
     }
 
     private void switchDdsAndSetEmergencyMode(Phone phone, @EmergencyType int emergencyType) {
+        if (emergencyType == EMERGENCY_TYPE_CALL) {
+            onCallSetupStage(CALL_SETUP_STAGE_RADIO_READY);
+        }
         switchDdsDelayed(phone, result -> {
             Rlog.i(TAG, "switchDdsDelayed: result = " + result);
+            if (emergencyType == EMERGENCY_TYPE_CALL) {
+                onCallSetupStage(CALL_SETUP_STAGE_DDS_SWITCHED);
+            }
             if (!result) {
                 // DDS Switch timed out/failed, but continue with call as it may still succeed.
                 Rlog.e(TAG, "DDS Switch failed.");
@@ -1006,6 +1084,7 @@ public class EmergencyStateTracker {
             Phone phone = null;
             if (emergencyType == EMERGENCY_TYPE_CALL) {
                 phone = mPhone;
+                onCallSetupStage(CALL_SETUP_STAGE_TRANSPORT_SELECTED);
             } else if (emergencyType == EMERGENCY_TYPE_SMS) {
                 phone = mSmsPhone;
             }
@@ -1045,6 +1124,9 @@ public class EmergencyStateTracker {
                 Rlog.w(TAG, "domain updated: Unexpected phoneType:" + phoneType);
             }
         }
+        if (Objects.equals(mOngoingConnection, c)) {
+            onCallSetupStage(CALL_SETUP_STAGE_DIALED);
+        }
         if (mEmergencyCallDomain == domain) return;
         Rlog.i(TAG, "domain updated: from " + mEmergencyCallDomain + " to " + domain);
         mEmergencyCallDomain = domain;
@@ -241,7 +241,6 @@ public final class GsmMmiCode extends Handler implements MmiCode {
 
     public static GsmMmiCode newFromDialString(String dialString, GsmCdmaPhone phone,
             UiccCardApplication app, ResultReceiver wrappedCallback) {
-        Matcher m;
         GsmMmiCode ret = null;
 
         if ((phone.getServiceState().getVoiceRoaming()
@@ -256,19 +255,19 @@ public final class GsmMmiCode extends Handler implements MmiCode {
             dialString = convertCdmaMmiCodesTo3gppMmiCodes(dialString);
         }
 
-        m = sPatternSuppService.matcher(dialString);
+        MmiCodeTokenizer.SuppServiceCode code = MmiCodeTokenizer.parseSuppServiceCode(dialString);
 
         // Is this formatted like a standard supplementary service code?
-        if (m.matches()) {
+        if (code != null) {
             ret = new GsmMmiCode(phone, app);
-            ret.mPoundString = makeEmptyNull(m.group(MATCH_GROUP_POUND_STRING));
-            ret.mAction = makeEmptyNull(m.group(MATCH_GROUP_ACTION));
-            ret.mSc = makeEmptyNull(m.group(MATCH_GROUP_SERVICE_CODE));
-            ret.mSia = makeEmptyNull(m.group(MATCH_GROUP_SIA));
-            ret.mSib = makeEmptyNull(m.group(MATCH_GROUP_SIB));
-            ret.mSic = makeEmptyNull(m.group(MATCH_GROUP_SIC));
-            ret.mPwd = makeEmptyNull(m.group(MATCH_GROUP_PWD_CONFIRM));
-            ret.mDialingNumber = makeEmptyNull(m.group(MATCH_GROUP_DIALING_NUMBER));
+            ret.mPoundString = code.poundString;
+            ret.mAction = code.action;
+            ret.mSc = code.serviceCode;
+            ret.mSia = code.sia;
+            ret.mSib = code.sib;
+            ret.mSic = code.sic;
+            ret.mPwd = code.pwd;
+            ret.mDialingNumber = code.dialingNumber;
 
             if(ret.mDialingNumber != null &&
                     ret.mDialingNumber.endsWith("#") &&
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.gsm;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+
+/**
+ * Splits a dial string into the parts of a supplementary service MMI code, as defined in
+ * TS 22.030 6.5.2 "Structure of the MMI", in a single pass.
+ *
+ * Accepts exactly the dial strings matched by {@link GsmMmiCode#sPatternSuppService}, and
+ * returns the same parts, with empty parts as {@code null}. Shared by {@link GsmMmiCode} and
+ * {@link com.android.internal.telephony.imsphone.ImsPhoneMmiCode}.
+ */
+public final class MmiCodeTokenizer {
+    private static final int MAX_SUPPLEMENTARY_INFO_COUNT = 4;
+
+    /** The parts of a supplementary service MMI code. */
+    public static final class SuppServiceCode {
+        /** Full string up to and including the #. */
+        @NonNull public final String poundString;
+        /** Activation, deactivation, interrogation, registration or erasure. */
+        @NonNull public final String action;
+        @NonNull public final String serviceCode;
+        @Nullable public final String sia;
+        @Nullable public final String sib;
+        @Nullable public final String sic;
+        /** Confirmation of a new password. */
+        @Nullable public final String pwd;
+        /** The number following the code, if any. */
+        @Nullable public final String dialingNumber;
+
+        private SuppServiceCode(String poundString, String action, String serviceCode,
+                String[] supplementaryInfo, String dialingNumber) {
+            this.poundString = poundString;
+            this.action = action;
+            this.serviceCode = serviceCode;
+            this.sia = supplementaryInfo[0];
+            this.sib = supplementaryInfo[1];
+            this.sic = supplementaryInfo[2];
+            this.pwd = supplementaryInfo[3];
+            this.dialingNumber = dialingNumber;
+        }
+
+        @Override
+        public String toString() {
+            return "SuppServiceCode{action=" + action + ", sc=" + serviceCode + "}";
+        }
+    }
+
+    private MmiCodeTokenizer() {
+    }
+
+    /**
+     * @return the parts of the supplementary service code, or {@code null} if the dial string is
+     * not formatted like one.
+     */
+    @Nullable
+    public static SuppServiceCode parseSuppServiceCode(@NonNull String dialString) {
+        int length = dialString.length();
+        if (length < 4) return null;
+
+        // Action: *, #, *#, ** or ##. It is always followed by a digit, so the first two
+        // characters are enough to tell them apart.
+        char first = dialString.charAt(0);
+        if (first != '*' && first != '#') return null;
+        char second = dialString.charAt(1);
+        int actionEnd;
+        if (isDigit(second)) {
+            actionEnd = 1;
+        } else if (second == '#' || (first == '*' && second == '*')) {
+            actionEnd = 2;
+        } else {
+            return null;
+        }
+
+        // Service code: 2 or 3 digits.
+        int pos = actionEnd;
+        while (pos < length && isDigit(dialString.charAt(pos))) pos++;
+        int serviceCodeLength = pos - actionEnd;
+        if (serviceCodeLength < 2 || serviceCodeLength > 3 || pos == length) return null;
+
+        // Up to 4 supplementary information fields, each starting with *, then #.
+        String[] supplementaryInfo = new String[MAX_SUPPLEMENTARY_INFO_COUNT];
+        int count = 0;
+        while (dialString.charAt(pos) == '*') {
+            if (count == MAX_SUPPLEMENTARY_INFO_COUNT) return null;
+            int start = ++pos;
+            while (pos < length && !isSeparator(dialString.charAt(pos))) pos++;
+            if (pos == length) return null;
+            supplementaryInfo[count++] = substringOrNull(dialString, start, pos);
+        }
+        if (dialString.charAt(pos) != '#') return null;
+        int poundEnd = pos + 1;
+
+        // Dialing number: the rest of the string, on a single line.
+        for (int i = poundEnd; i < length; i++) {
+            if (isLineTerminator(dialString.charAt(i))) return null;
+        }
+
+        return new SuppServiceCode(dialString.substring(0, poundEnd),
+                dialString.substring(0, actionEnd),
+                dialString.substring(actionEnd, actionEnd + serviceCodeLength),
+                supplementaryInfo, substringOrNull(dialString, poundEnd, length));
+    }
+
+    /**
+     * @return the service code of the supplementary service code, or {@code null} if the dial
+     * string is not formatted like one.
+     */
+    @Nullable
+    public static String parseServiceCode(@NonNull String dialString) {
+        SuppServiceCode code = parseSuppServiceCode(dialString);
+        return code != null ? code.serviceCode : null;
+    }
+
+    private static String substringOrNull(String s, int start, int end) {
+        return start < end ? s.substring(start, end) : null;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '*' || c == '#';
+    }
+
+    // The line terminators not matched by '.' in a regular expression.
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
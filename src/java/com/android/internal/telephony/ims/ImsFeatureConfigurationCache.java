@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.ims;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.telephony.ims.stub.ImsFeatureConfiguration;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Persists the features returned by the last dynamic query of each ImsService, so that the
+ * ImsResolver can bind to the ImsService with these features at boot, before the query returns.
+ *
+ * An entry is only used if the package of the ImsService has not been updated since the entry
+ * was written. The cache is stored in device protected storage, since the ImsResolver starts
+ * before the user unlocks the device.
+ */
+public class ImsFeatureConfigurationCache {
+    private static final String TAG = "ImsFeatureConfigCache";
+    private static final String SHARED_PREFS_NAME = "ims_feature_configuration_cache";
+
+    private final Context mContext;
+    private SharedPreferences mSharedPreferences;
+
+    public ImsFeatureConfigurationCache(@NonNull Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return the features the ImsService returned in its last query, or {@code null} if there
+     * are none or its package changed since.
+     */
+    @Nullable
+    public Set<ImsFeatureConfiguration.FeatureSlotPair> get(@NonNull ComponentName name) {
+        SharedPreferences prefs = getSharedPreferences();
+        String version = getPackageVersion(name);
+        if (prefs == null || version == null) return null;
+        String entry = prefs.getString(name.flattenToString(), null);
+        if (entry == null) return null;
+        // Format: version|slot:feature,slot:feature
+        int separator = entry.indexOf('|');
+        if (separator < 0 || !version.equals(entry.substring(0, separator))) return null;
+        Set<ImsFeatureConfiguration.FeatureSlotPair> features = new HashSet<>();
+        String featureList = entry.substring(separator + 1);
+        if (featureList.isEmpty()) return features;
+        try {
+            for (String pair : TextUtils.split(featureList, ",")) {
+                String[] slotAndFeature = TextUtils.split(pair, ":");
+                if (slotAndFeature.length != 2) return null;
+                features.add(new ImsFeatureConfiguration.FeatureSlotPair(
+                        Integer.parseInt(slotAndFeature[0]),
+                        Integer.parseInt(slotAndFeature[1])));
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "get: invalid entry for " + name + ": " + entry);
+            return null;
+        }
+        return features;
+    }
+
+    /**
+     * Stores the features the ImsService returned in a query.
+     */
+    public void put(@NonNull ComponentName name,
+            @NonNull Set<ImsFeatureConfiguration.FeatureSlotPair> features) {
+        SharedPreferences prefs = getSharedPreferences();
+        String version = getPackageVersion(name);
+        if (prefs == null || version == null) return;
+        StringBuilder entry = new StringBuilder(version).append('|');
+        boolean first = true;
+        for (ImsFeatureConfiguration.FeatureSlotPair pair : features) {
+            if (!first) entry.append(',');
+            entry.append(pair.slotId).append(':').append(pair.featureType);
+            first = false;
+        }
+        String value = entry.toString();
+        String key = name.flattenToString();
+        if (!value.equals(prefs.getString(key, null))) {
+            prefs.edit().putString(key, value).apply();
+        }
+    }
+
+    private SharedPreferences getSharedPreferences() {
+        if (mSharedPreferences == null) {
+            Context storageContext = mContext.createDeviceProtectedStorageContext();
+            if (storageContext == null) return null;
+            mSharedPreferences = storageContext.getSharedPreferences(SHARED_PREFS_NAME,
+                    Context.MODE_PRIVATE);
+        }
+        return mSharedPreferences;
+    }
+
+    // The version code and last update time of the package, which change whenever it is updated.
+    private String getPackageVersion(ComponentName name) {
+        PackageManager pm = mContext.getPackageManager();
+        if (pm == null) return null;
+        PackageInfo info;
+        try {
+            info = pm.getPackageInfo(name.getPackageName(), 0 /*flags*/);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        if (info == null) return null;
+        return info.getLongVersionCode() + "-" + info.lastUpdateTime;
+    }
+}
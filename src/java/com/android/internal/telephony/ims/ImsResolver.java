@@ -35,6 +35,7 @@ import android.os.Looper;
 import android.os.Message;
 import android.os.PersistableBundle;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.telephony.CarrierConfigManager;
@@ -53,6 +54,7 @@ import android.util.LocalLog;
 import android.util.Log;
 import android.util.SparseArray;
 import android.util.SparseIntArray;
+import android.util.SparseLongArray;
 
 import com.android.ims.ImsFeatureBinderRepository;
 import com.android.ims.ImsFeatureContainer;
@@ -583,7 +585,14 @@ public class ImsResolver implements ImsServiceController.ImsServiceControllerCal
     // Active ImsServiceControllers, which are bound to ImsServices.
     private final Map<ComponentName, ImsServiceController> mActiveControllers = new HashMap<>();
     private ImsServiceFeatureQueryManager mFeatureQueryManager;
+    // The features returned by the last dynamic query of each ImsService, used to bind before
+    // the query completes at boot.
+    private ImsFeatureConfigurationCache mFeatureConfigurationCache;
     private final SparseIntArray mSlotIdToSubIdMap;
+    // Time of initialization and, per slot, time from initialization until a controller was
+    // first set for MMTEL. Locked on mBoundServicesLock.
+    private long mInitializeTimeMillis;
+    private final SparseLongArray mMmTelControllerSetDelayMillis = new SparseLongArray();
 
     public ImsResolver(Context context, String defaultMmTelPackageName,
             String defaultRcsPackageName, int numSlots, ImsFeatureBinderRepository repo,
@@ -637,6 +646,11 @@ public class ImsResolver implements ImsServiceController.ImsServiceControllerCal
         mDynamicQueryManagerFactory = m;
     }
 
+    @VisibleForTesting
+    public void setImsFeatureConfigurationCache(ImsFeatureConfigurationCache cache) {
+        mFeatureConfigurationCache = cache;
+    }
+
     /**
      * Needs to be called after the constructor to kick off the process of binding to ImsServices.
      * Should be run on the handler thread of ImsResolver
@@ -651,6 +665,12 @@ public class ImsResolver implements ImsServiceController.ImsServiceControllerCal
         PhoneConfigurationManager.registerForMultiSimConfigChange(mHandler,
                 HANDLER_MSIM_CONFIGURATION_CHANGE, null);
         mFeatureQueryManager = mDynamicQueryManagerFactory.create(mContext, mDynamicQueryListener);
+        if (mFeatureConfigurationCache == null) {
+            mFeatureConfigurationCache = new ImsFeatureConfigurationCache(mContext);
+        }
+        synchronized (mBoundServicesLock) {
+            mInitializeTimeMillis = SystemClock.elapsedRealtime();
+        }
 
         updateInstalledServicesCache();
 
@@ -1092,6 +1112,13 @@ public class ImsResolver implements ImsServiceController.ImsServiceControllerCal
                     + ImsFeature.FEATURE_LOG_MAP.get(feature) + " using package: "
                     + controller.getComponentName());
             services.put(feature, controller);
+            if (feature == ImsFeature.FEATURE_MMTEL
+                    && mMmTelControllerSetDelayMillis.indexOfKey(slotId) < 0) {
+                long delay = SystemClock.elapsedRealtime() - mInitializeTimeMillis;
+                mMmTelControllerSetDelayMillis.put(slotId, delay);
+                mEventLog.log("putImsController - MMTEL first set on slot " + slotId + " "
+                        + delay + " mS after initialization");
+            }
         }
     }
 
@@ -1621,6 +1648,22 @@ public class ImsResolver implements ImsServiceController.ImsServiceControllerCal
                     + " set as carrier/device ImsService.");
             return;
         }
+        // If the ImsService features are not known yet, bind with the features it returned
+        // the last time it was queried while the query is running. The configuration is
+        // recalculated with the real features once the query completes.
+        if (service.getSupportedFeatures().isEmpty()) {
+            Set<ImsFeatureConfiguration.FeatureSlotPair> cachedFeatures =
+                    mFeatureConfigurationCache.get(service.name);
+            if (cachedFeatures != null) {
+                sanitizeFeatureConfig(cachedFeatures);
+            }
+            if (cachedFeatures != null && !cachedFeatures.isEmpty()) {
+                mEventLog.log("startDynamicQuery - using cached features for " + service.name
+                        + ": " + printFeatures(cachedFeatures));
+                service.replaceFeatures(cachedFeatures);
+                calculateFeatureConfigurationChange();
+            }
+        }
         mEventLog.log("startDynamicQuery - starting query for " + service);
         boolean queryStarted = mFeatureQueryManager.startQuery(service.name,
                 service.controllerFactory.getServiceInterface());
@@ -1644,6 +1687,7 @@ public class ImsResolver implements ImsServiceController.ImsServiceControllerCal
             return;
         }
         sanitizeFeatureConfig(features);
+        mFeatureConfigurationCache.put(name, features);
         mEventLog.log("dynamicQueryComplete: for package " + name + ", features: "
                 + printFeatures(service.getSupportedFeatures()) + " -> " + printFeatures(features));
         // Add features to service
@@ -1872,6 +1916,15 @@ public class ImsResolver implements ImsServiceController.ImsServiceControllerCal
             pw.decreaseIndent();
         }
         pw.decreaseIndent();
+        pw.println("MMTEL controller set delay after initialization (mS):");
+        pw.increaseIndent();
+        synchronized (mBoundServicesLock) {
+            for (int i = 0; i < mMmTelControllerSetDelayMillis.size(); i++) {
+                pw.println("slot=" + mMmTelControllerSetDelayMillis.keyAt(i) + ": "
+                        + mMmTelControllerSetDelayMillis.valueAt(i));
+            }
+        }
+        pw.decreaseIndent();
         pw.println("Connection Repository Log:");
         pw.increaseIndent();
         mRepo.dump(pw);
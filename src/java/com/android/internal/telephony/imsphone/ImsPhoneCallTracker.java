@@ -715,6 +715,15 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
     //***** Instance Variables
     @UnsupportedAppUsage(maxTargetSdk = Build.VERSION_CODES.R, trackingBug = 170729553)
     private ArrayList<ImsPhoneConnection> mConnections = new ArrayList<ImsPhoneConnection>();
+    // Lock free index of the connections added with addConnection, so that the ImsCall listener
+    // callbacks do not contend with dial for the tracker lock. The ImsCall and call id of a
+    // connection can change, so an entry is checked on lookup and a miss falls back to scanning
+    // mConnections.
+    private final Set<ImsPhoneConnection> mIndexedConnections = ConcurrentHashMap.newKeySet();
+    private final Map<ImsCall, ImsPhoneConnection> mConnectionsByImsCall =
+            new ConcurrentHashMap<>();
+    private final Map<String, ImsPhoneConnection> mConnectionsByCallId =
+            new ConcurrentHashMap<>();
     private RegistrantList mVoiceCallEndedRegistrants = new RegistrantList();
     private RegistrantList mVoiceCallStartedRegistrants = new RegistrantList();
 
@@ -1529,7 +1538,7 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
             connection.onDisconnect(disconnectCause);
             connection.getCall().detach(connection);
         }
-        mConnections.clear();
+        clearConnections();
         // Pending MO was added to mConnections previously, so it has already been disconnected
         // above. Remove all references to it.
         mPendingMO = null;
@@ -2968,7 +2977,7 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
             if (DBG) log("callEndCleanupHandOverCallIfAny, mHandoverCall.mConnections="
                     + mHandoverCall.getConnections());
             mHandoverCall.clearConnections();
-            mConnections.clear();
+            clearConnections();
             mState = PhoneConstants.State.IDLE;
         }
     }
@@ -3019,9 +3028,23 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
     }
 
     @UnsupportedAppUsage(maxTargetSdk = Build.VERSION_CODES.R, trackingBug = 170729553)
-    private synchronized ImsPhoneConnection findConnection(final ImsCall imsCall) {
+    private ImsPhoneConnection findConnection(final ImsCall imsCall) {
+        if (imsCall != null) {
+            ImsPhoneConnection conn = mConnectionsByImsCall.get(imsCall);
+            if (conn != null && conn.getImsCall() == imsCall
+                    && mIndexedConnections.contains(conn)) {
+                return conn;
+            }
+        }
+        return scanConnections(imsCall);
+    }
+
+    private synchronized ImsPhoneConnection scanConnections(final ImsCall imsCall) {
         for (ImsPhoneConnection conn : mConnections) {
             if (conn.getImsCall() == imsCall) {
+                if (imsCall != null && mIndexedConnections.contains(conn)) {
+                    mConnectionsByImsCall.put(imsCall, conn);
+                }
                 return conn;
             }
         }
@@ -3056,6 +3079,10 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
     @UnsupportedAppUsage(maxTargetSdk = Build.VERSION_CODES.R, trackingBug = 170729553)
     public synchronized void removeConnection(ImsPhoneConnection conn) {
         mConnections.remove(conn);
+        if (mIndexedConnections.remove(conn)) {
+            mConnectionsByImsCall.values().removeIf(c -> c == conn);
+            mConnectionsByCallId.values().removeIf(c -> c == conn);
+        }
 
         // If not emergency call is remaining, notify emergency call registrants
         if (mIsInEmergencyCall) {
@@ -3081,12 +3108,29 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
     @UnsupportedAppUsage(maxTargetSdk = Build.VERSION_CODES.R, trackingBug = 170729553)
     private synchronized void addConnection(ImsPhoneConnection conn) {
         mConnections.add(conn);
+        mIndexedConnections.add(conn);
+        ImsCall imsCall = conn.getImsCall();
+        if (imsCall != null) {
+            mConnectionsByImsCall.put(imsCall, conn);
+            ImsCallSession session = imsCall.getCallSession();
+            String callId = session != null ? session.getCallId() : null;
+            if (callId != null) {
+                mConnectionsByCallId.put(callId, conn);
+            }
+        }
         if (conn.isEmergency()) {
             mIsInEmergencyCall = true;
             mPhone.sendEmergencyCallStateChange(true);
         }
     }
 
+    private synchronized void clearConnections() {
+        mConnections.clear();
+        mIndexedConnections.clear();
+        mConnectionsByImsCall.clear();
+        mConnectionsByCallId.clear();
+    }
+
     @UnsupportedAppUsage(maxTargetSdk = Build.VERSION_CODES.R, trackingBug = 170729553)
     private void processCallStateChange(ImsCall imsCall, ImsPhoneCall.State state, int cause) {
         if (DBG) log("processCallStateChange " + imsCall + " state=" + state + " cause=" + cause);
@@ -4234,9 +4278,20 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
             }
         }
 
-        private void updateConferenceParticipantsTiming(List<ConferenceParticipant> participants) {
+        private void updateConferenceParticipantsTiming(ImsPhoneConnection conn,
+                List<ConferenceParticipant> participants) {
             for (ConferenceParticipant participant : participants) {
                 // Every time participants are newly created from parcel, update their connect time.
+                // Participants already known to the connection keep their connect time, which
+                // avoids formatting the number of every participant on every update.
+                ConferenceParticipant previous =
+                        conn.getLastConferenceParticipant(participant.getEndpoint());
+                if (previous != null && previous.getConnectTime() != 0) {
+                    participant.setConnectTime(previous.getConnectTime());
+                    participant.setConnectElapsedTime(previous.getConnectElapsedTime());
+                    participant.setCallDirection(previous.getCallDirection());
+                    continue;
+                }
                 CacheEntry cachedConnectTime = findConnectionTimeUsePhoneNumber(participant);
                 if (cachedConnectTime != null) {
                     participant.setConnectTime(cachedConnectTime.mConnectTime);
@@ -4269,7 +4324,7 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
 
             ImsPhoneConnection conn = findConnection(call);
             if (conn != null) {
-                updateConferenceParticipantsTiming(participants);
+                updateConferenceParticipantsTiming(conn, participants);
                 conn.updateConferenceParticipants(participants);
             }
         }
@@ -6037,6 +6092,11 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
         return mConnections;
     }
 
+    @VisibleForTesting
+    public ImsPhoneConnection getConnectionForImsCall(ImsCall imsCall) {
+        return findConnection(imsCall);
+    }
+
     @VisibleForTesting
     public ImsPhoneConnection getPendingMO() {
         return mPendingMO;
@@ -6194,20 +6254,36 @@ public class ImsPhoneCallTracker extends CallTracker implements ImsPullCall {
         return false;
     }
 
-    private synchronized ImsPhoneConnection findConnection(String callId) {
-        for (ImsPhoneConnection c : mConnections) {
-            ImsCall imsCall = c.getImsCall();
-            if (imsCall == null) continue;
-            ImsCallSession session = imsCall.getCallSession();
-            if (session == null) continue;
+    private ImsPhoneConnection findConnection(String callId) {
+        if (callId != null) {
+            ImsPhoneConnection c = mConnectionsByCallId.get(callId);
+            if (c != null && mIndexedConnections.contains(c) && hasCallId(c, callId)) {
+                return c;
+            }
+        }
+        return scanConnections(callId);
+    }
 
-            if (TextUtils.equals(session.getCallId(), callId)) {
+    private synchronized ImsPhoneConnection scanConnections(String callId) {
+        for (ImsPhoneConnection c : mConnections) {
+            if (hasCallId(c, callId)) {
+                if (callId != null && mIndexedConnections.contains(c)) {
+                    mConnectionsByCallId.put(callId, c);
+                }
                 return c;
             }
         }
         return null;
     }
 
+    private static boolean hasCallId(ImsPhoneConnection c, String callId) {
+        ImsCall imsCall = c.getImsCall();
+        if (imsCall == null) return false;
+        ImsCallSession session = imsCall.getCallSession();
+        if (session == null) return false;
+        return TextUtils.equals(session.getCallId(), callId);
+    }
+
     /**
      * Update the list of SrvccConnection with the given SrvccCall and ImsPhoneconnection.
      *
@@ -45,9 +45,11 @@ import android.telephony.ims.ImsStreamMediaProfile;
 import android.telephony.ims.RtpHeaderExtension;
 import android.telephony.ims.RtpHeaderExtensionType;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 
 import com.android.ims.ImsCall;
 import com.android.ims.ImsException;
+import com.android.ims.internal.ConferenceParticipant;
 import com.android.ims.internal.ImsVideoCallProviderWrapper;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.telephony.CallStateException;
@@ -62,6 +64,8 @@ import com.android.telephony.Rlog;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -138,6 +142,12 @@ public class ImsPhoneConnection extends Connection implements
      */
     private boolean mIsMergeInProcess = false;
 
+    /**
+     * The conference participants last notified to the listeners, keyed by endpoint, or
+     * {@code null} if none were notified yet.
+     */
+    private Map<Uri, ConferenceParticipant> mConferenceParticipantsByEndpoint;
+
     /**
      * Used as an override to determine whether video is locally available for this call.
      * This allows video availability to be overridden in the case that the modem says video is
@@ -921,6 +931,83 @@ public class ImsPhoneConnection extends Connection implements
         }
     }
 
+    /**
+     * Notifies listeners of the conference participants, unless no participant was added,
+     * removed or changed since the last notification.  The conference event package is sent in
+     * full on every update even if only one participant of a large conference changed, and the
+     * listeners rebuild their state from the full list.
+     *
+     * @param conferenceParticipants The participants.
+     */
+    @Override
+    public void updateConferenceParticipants(List<ConferenceParticipant> conferenceParticipants) {
+        if (conferenceParticipants == null) {
+            mConferenceParticipantsByEndpoint = null;
+            super.updateConferenceParticipants(conferenceParticipants);
+            return;
+        }
+        Map<Uri, ConferenceParticipant> participantsByEndpoint =
+                new ArrayMap<>(conferenceParticipants.size());
+        int added = 0;
+        int changed = 0;
+        boolean isKeyed = true;
+        for (ConferenceParticipant participant : conferenceParticipants) {
+            Uri endpoint = participant.getEndpoint();
+            if (endpoint == null || participantsByEndpoint.put(endpoint, participant) != null) {
+                // Participants cannot be diffed without a unique endpoint.
+                isKeyed = false;
+                continue;
+            }
+            ConferenceParticipant previous = mConferenceParticipantsByEndpoint != null
+                    ? mConferenceParticipantsByEndpoint.get(endpoint) : null;
+            if (previous == null) {
+                added++;
+            } else if (!isSameParticipant(previous, participant)) {
+                changed++;
+            }
+        }
+        int removed = 0;
+        if (mConferenceParticipantsByEndpoint != null) {
+            for (Uri endpoint : mConferenceParticipantsByEndpoint.keySet()) {
+                if (!participantsByEndpoint.containsKey(endpoint)) {
+                    removed++;
+                }
+            }
+        }
+        boolean isUnchanged = isKeyed && mConferenceParticipantsByEndpoint != null
+                && added == 0 && changed == 0 && removed == 0;
+        mConferenceParticipantsByEndpoint = isKeyed ? participantsByEndpoint : null;
+        if (isUnchanged) {
+            Rlog.d(LOG_TAG, "updateConferenceParticipants: no change, count="
+                    + conferenceParticipants.size());
+            return;
+        }
+        Rlog.d(LOG_TAG, "updateConferenceParticipants: added=" + added + " removed=" + removed
+                + " changed=" + changed + " count=" + conferenceParticipants.size());
+        super.updateConferenceParticipants(conferenceParticipants);
+    }
+
+    /**
+     * @return the participant with the given endpoint in the last notification of the conference
+     * participants, or {@code null} if there is none.
+     */
+    @Nullable
+    public ConferenceParticipant getLastConferenceParticipant(@Nullable Uri endpoint) {
+        if (endpoint == null || mConferenceParticipantsByEndpoint == null) {
+            return null;
+        }
+        return mConferenceParticipantsByEndpoint.get(endpoint);
+    }
+
+    private static boolean isSameParticipant(ConferenceParticipant a, ConferenceParticipant b) {
+        return a.getState() == b.getState()
+                && a.getParticipantPresentation() == b.getParticipantPresentation()
+                && a.getCallDirection() == b.getCallDirection()
+                && a.getConnectTime() == b.getConnectTime()
+                && Objects.equals(a.getHandle(), b.getHandle())
+                && Objects.equals(a.getDisplayName(), b.getDisplayName());
+    }
+
     /**
      * Sets the conference connect time.  Used when an {@code ImsConference} is created to out of
      * this phone connection.
@@ -65,13 +65,13 @@ import com.android.internal.telephony.MmiCode;
 import com.android.internal.telephony.Phone;
 import com.android.internal.telephony.flags.FeatureFlags;
 import com.android.internal.telephony.gsm.GsmMmiCode;
+import com.android.internal.telephony.gsm.MmiCodeTokenizer;
 import com.android.internal.telephony.uicc.IccRecords;
 import com.android.telephony.Rlog;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * The motto for this file is:
@@ -220,33 +220,6 @@ public final class ImsPhoneMmiCode extends Handler implements MmiCode {
     static final String IcbAnonymousMmi = "Anonymous Incoming Call Barring";
     //***** Class Variables
 
-
-    // See TS 22.030 6.5.2 "Structure of the MMI"
-
-    private static Pattern sPatternSuppService = Pattern.compile(
-        "((\\*|#|\\*#|\\*\\*|##)(\\d{2,3})(\\*([^*#]*)(\\*([^*#]*)(\\*([^*#]*)(\\*([^*#]*))?)?)?)?#)(.*)");
-/*       1  2                    3          4  5       6   7         8    9     10  11             12
-
-         1 = Full string up to and including #
-         2 = action (activation/interrogation/registration/erasure)
-         3 = service code
-         5 = SIA
-         7 = SIB
-         9 = SIC
-         10 = dialing number
-*/
-
-    private static final int MATCH_GROUP_POUND_STRING = 1;
-
-    private static final int MATCH_GROUP_ACTION = 2;
-                        //(activation/interrogation/registration/erasure)
-
-    private static final int MATCH_GROUP_SERVICE_CODE = 3;
-    private static final int MATCH_GROUP_SIA = 5;
-    private static final int MATCH_GROUP_SIB = 7;
-    private static final int MATCH_GROUP_SIC = 9;
-    private static final int MATCH_GROUP_PWD_CONFIRM = 11;
-    private static final int MATCH_GROUP_DIALING_NUMBER = 12;
     static private String[] sTwoDigitNumberPattern;
 
     private final FeatureFlags mFeatureFlags;
@@ -275,7 +248,6 @@ public final class ImsPhoneMmiCode extends Handler implements MmiCode {
 
     static ImsPhoneMmiCode newFromDialString(String dialString, ImsPhone phone,
             ResultReceiver wrappedCallback, FeatureFlags featureFlags) {
-        Matcher m;
         ImsPhoneMmiCode ret = null;
 
         if ((phone.getDefaultPhone().getServiceState().getVoiceRoaming()
@@ -290,19 +262,19 @@ public final class ImsPhoneMmiCode extends Handler implements MmiCode {
             dialString = convertCdmaMmiCodesTo3gppMmiCodes(dialString);
         }
 
-        m = sPatternSuppService.matcher(dialString);
+        MmiCodeTokenizer.SuppServiceCode code = MmiCodeTokenizer.parseSuppServiceCode(dialString);
 
         // Is this formatted like a standard supplementary service code?
-        if (m.matches()) {
+        if (code != null) {
             ret = new ImsPhoneMmiCode(phone, featureFlags);
-            ret.mPoundString = makeEmptyNull(m.group(MATCH_GROUP_POUND_STRING));
-            ret.mAction = makeEmptyNull(m.group(MATCH_GROUP_ACTION));
-            ret.mSc = makeEmptyNull(m.group(MATCH_GROUP_SERVICE_CODE));
-            ret.mSia = makeEmptyNull(m.group(MATCH_GROUP_SIA));
-            ret.mSib = makeEmptyNull(m.group(MATCH_GROUP_SIB));
-            ret.mSic = makeEmptyNull(m.group(MATCH_GROUP_SIC));
-            ret.mPwd = makeEmptyNull(m.group(MATCH_GROUP_PWD_CONFIRM));
-            ret.mDialingNumber = makeEmptyNull(m.group(MATCH_GROUP_DIALING_NUMBER));
+            ret.mPoundString = code.poundString;
+            ret.mAction = code.action;
+            ret.mSc = code.serviceCode;
+            ret.mSia = code.sia;
+            ret.mSib = code.sib;
+            ret.mSic = code.sic;
+            ret.mPwd = code.pwd;
+            ret.mDialingNumber = code.dialingNumber;
             ret.mCallbackReceiver = wrappedCallback;
             // According to TS 22.030 6.5.2 "Structure of the MMI",
             // the dialing number should not ending with #.
@@ -400,9 +372,8 @@ public final class ImsPhoneMmiCode extends Handler implements MmiCode {
 
     static boolean isScMatchesSuppServType(String dialString) {
         boolean isMatch = false;
-        Matcher m = sPatternSuppService.matcher(dialString);
-        if (m.matches()) {
-            String sc = makeEmptyNull(m.group(MATCH_GROUP_SERVICE_CODE));
+        String sc = MmiCodeTokenizer.parseServiceCode(dialString);
+        if (sc != null) {
             if (sc.equals(SC_CFUT)) {
                 isMatch = true;
             } else if(sc.equals(SC_BS_MT)) {
@@ -529,9 +500,8 @@ public final class ImsPhoneMmiCode extends Handler implements MmiCode {
             dialString = convertCdmaMmiCodesTo3gppMmiCodes(dialString);
         }
 
-        Matcher m = sPatternSuppService.matcher(dialString);
-        if (m.matches()) {
-            String sc = makeEmptyNull(m.group(MATCH_GROUP_SERVICE_CODE));
+        String sc = MmiCodeTokenizer.parseServiceCode(dialString);
+        if (sc != null) {
             if (isServiceCodeCallForwarding(sc)) {
                 return true;
             } else if (isServiceCodeCallBarring(sc)) {
@@ -19,6 +19,7 @@ package com.android.internal.telephony.imsphone;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.telecom.Connection;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -26,6 +27,7 @@ import com.android.telephony.Rlog;
 
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayDeque;
 import java.util.concurrent.CountDownLatch;
 
 public class ImsRttTextHandler extends Handler {
@@ -34,8 +36,7 @@ public class ImsRttTextHandler extends Handler {
     }
 
     private static final String LOG_TAG = "ImsRttTextHandler";
-    // RTT buffering and sending tuning constants.
-    // TODO: put this in carrier config?
+    // Default RTT buffering and sending tuning constants, see the constructor to override them.
 
     // These count Unicode codepoints, not Java char types.
     public static final int MAX_CODEPOINTS_PER_SECOND = 30;
@@ -50,16 +51,13 @@ public class ImsRttTextHandler extends Handler {
     // Messages for the handler.
     // Initializes the text handler. Should have an RttTextStream set in msg.obj
     private static final int INITIALIZE = 1;
-    // Appends a string to the buffer to send to the network. Should have the string in msg.obj
+    // Moves the text read from in-call to the buffer to send to the network. No extra data.
     private static final int APPEND_TO_NETWORK_BUFFER = 2;
     // Send a string received from the network to the in-call app. Should have the string in
     // msg.obj.
     private static final int SEND_TO_INCALL = 3;
     // Send as many characters as possible, as constrained by the rate limit. No extra data.
     private static final int ATTEMPT_SEND_TO_NETWORK = 4;
-    // Indicates that N characters were sent a second ago and should be ignored by the rate
-    // limiter. msg.arg1 should be set to N.
-    private static final int EXPIRE_SENT_CODEPOINT_COUNT = 5;
     // Indicates that the call is over and we should teardown everything we have set up.
     private static final int TEARDOWN = 9999;
 
@@ -98,8 +96,7 @@ public class ImsRttTextHandler extends Handler {
                 if (charsReceived.length() == 0) {
                     continue;
                 }
-                obtainMessage(APPEND_TO_NETWORK_BUFFER, charsReceived)
-                        .sendToTarget();
+                onTextReadFromInCall(charsReceived);
                 if (mReadNotifier != null) {
                     mReadNotifier.countDown();
                 }
@@ -107,8 +104,69 @@ public class ImsRttTextHandler extends Handler {
         }
     }
 
-    private int mCodepointsAvailableForTransmission = MAX_CODEPOINTS_PER_SECOND;
-    private StringBuffer mBufferedTextToNetwork = new StringBuffer();
+    /**
+     * A FIFO of codepoints, stored in a growable circular array so that counting, appending and
+     * removing codepoints does not rescan or copy the buffered text.
+     */
+    private static final class CodepointRingBuffer {
+        private int[] mCodepoints = new int[64];
+        private int mHead;
+        private int mSize;
+
+        int size() {
+            return mSize;
+        }
+
+        void append(String s) {
+            for (int i = 0; i < s.length(); ) {
+                int codepoint = s.codePointAt(i);
+                if (mSize == mCodepoints.length) {
+                    int[] codepoints = new int[mCodepoints.length * 2];
+                    for (int j = 0; j < mSize; j++) {
+                        codepoints[j] = mCodepoints[(mHead + j) % mCodepoints.length];
+                    }
+                    mCodepoints = codepoints;
+                    mHead = 0;
+                }
+                mCodepoints[(mHead + mSize) % mCodepoints.length] = codepoint;
+                mSize++;
+                i += Character.charCount(codepoint);
+            }
+        }
+
+        /** Removes the first {@code count} codepoints and returns them as a string. */
+        String poll(int count) {
+            StringBuilder sb = new StringBuilder(count);
+            for (int i = 0; i < count; i++) {
+                sb.appendCodePoint(mCodepoints[mHead]);
+                mHead = (mHead + 1) % mCodepoints.length;
+            }
+            mSize -= count;
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(mSize);
+            for (int i = 0; i < mSize; i++) {
+                sb.appendCodePoint(mCodepoints[(mHead + i) % mCodepoints.length]);
+            }
+            return sb.toString();
+        }
+    }
+
+    private final int mMaxCodepointsPerSecond;
+    private final int mMaxBufferingDelayMillis;
+    private final int mMaxBufferedCodepointCount;
+
+    // Time and codepoint count of the writes of the last second, oldest first. The rate limit
+    // allows at most mMaxCodepointsPerSecond codepoints in any one second window.
+    private final ArrayDeque<long[]> mRecentWrites = new ArrayDeque<>();
+    private int mRecentWriteCodepointCount;
+
+    // Text read from in-call, not yet moved to the network buffer. Written by the reader thread.
+    private final StringBuilder mTextReadFromInCall = new StringBuilder();
+    private final CodepointRingBuffer mBufferedTextToNetwork = new CodepointRingBuffer();
     private InCallReaderThread mReaderThread;
     // This is only ever used when the pipes fail and we have to re-setup. Messages received
     // from the network are buffered here until Telecom gets back to us with the new pipes.
@@ -147,45 +205,21 @@ public class ImsRttTextHandler extends Handler {
                 }
                 break;
             case APPEND_TO_NETWORK_BUFFER:
-                // First, append the text-to-send to the string buffer
-                mBufferedTextToNetwork.append((String) msg.obj);
-                // Check to see how many codepoints we have buffered. If we have more than 5,
-                // send immediately, otherwise, wait until a timeout happens.
-                int numCodepointsBuffered = mBufferedTextToNetwork
-                        .codePointCount(0, mBufferedTextToNetwork.length());
-                if (numCodepointsBuffered >= MAX_BUFFERED_CHARACTER_COUNT) {
-                    sendMessage(obtainMessage(ATTEMPT_SEND_TO_NETWORK));
-                } else {
-                    sendEmptyMessageDelayed(
-                            ATTEMPT_SEND_TO_NETWORK, MAX_BUFFERING_DELAY_MILLIS);
+                // First, move the text read from in-call to the network buffer
+                synchronized (mTextReadFromInCall) {
+                    mBufferedTextToNetwork.append(mTextReadFromInCall.toString());
+                    mTextReadFromInCall.setLength(0);
                 }
-                break;
-            case ATTEMPT_SEND_TO_NETWORK:
-                // Check to see how many codepoints we can send, and send that many.
-                int numCodePointsAvailableInBuffer = mBufferedTextToNetwork.codePointCount(0,
-                        mBufferedTextToNetwork.length());
-                int numCodePointsSent = Math.min(numCodePointsAvailableInBuffer,
-                        mCodepointsAvailableForTransmission);
-                if (numCodePointsSent == 0) {
-                    break;
+                // If enough codepoints are buffered, send immediately, otherwise, send when the
+                // oldest buffered codepoint has waited long enough.
+                if (mBufferedTextToNetwork.size() >= mMaxBufferedCodepointCount) {
+                    attemptSendToNetwork();
+                } else if (!hasMessages(ATTEMPT_SEND_TO_NETWORK)) {
+                    sendEmptyMessageDelayed(ATTEMPT_SEND_TO_NETWORK, mMaxBufferingDelayMillis);
                 }
-                int endSendIndex = mBufferedTextToNetwork.offsetByCodePoints(0,
-                        numCodePointsSent);
-
-                String stringToSend = mBufferedTextToNetwork.substring(0, endSendIndex);
-
-                mBufferedTextToNetwork.delete(0, endSendIndex);
-                mNetworkWriter.write(stringToSend);
-                mCodepointsAvailableForTransmission -= numCodePointsSent;
-                sendMessageDelayed(
-                        obtainMessage(EXPIRE_SENT_CODEPOINT_COUNT, numCodePointsSent, 0),
-                        MILLIS_PER_SECOND);
                 break;
-            case EXPIRE_SENT_CODEPOINT_COUNT:
-                mCodepointsAvailableForTransmission += msg.arg1;
-                if (mCodepointsAvailableForTransmission > 0) {
-                    sendMessage(obtainMessage(ATTEMPT_SEND_TO_NETWORK));
-                }
+            case ATTEMPT_SEND_TO_NETWORK:
+                attemptSendToNetwork();
                 break;
             case TEARDOWN:
                 try {
@@ -202,9 +236,99 @@ public class ImsRttTextHandler extends Handler {
         }
     }
 
+    /**
+     * Sends as many buffered codepoints as the rate limit allows in a single write. If some are
+     * left, schedules the next attempt for when a full batch of them can be sent.
+     */
+    private void attemptSendToNetwork() {
+        removeMessages(ATTEMPT_SEND_TO_NETWORK);
+        if (mBufferedTextToNetwork.size() == 0) {
+            return;
+        }
+        long now = getTimeMillis();
+        expireRecentWrites(now);
+        int numCodePointsSent = Math.min(mBufferedTextToNetwork.size(),
+                mMaxCodepointsPerSecond - mRecentWriteCodepointCount);
+        if (numCodePointsSent > 0) {
+            mRecentWrites.addLast(new long[] {now, numCodePointsSent});
+            mRecentWriteCodepointCount += numCodePointsSent;
+            mNetworkWriter.write(mBufferedTextToNetwork.poll(numCodePointsSent));
+        }
+        int numCodePointsLeft = mBufferedTextToNetwork.size();
+        if (numCodePointsLeft > 0) {
+            // The whole budget is used. Wait until enough of the recent writes leave the window
+            // to send a full batch.
+            int numCodePointsToExpire = Math.min(mRecentWriteCodepointCount,
+                    Math.min(numCodePointsLeft, mMaxBufferedCodepointCount));
+            int numCodePointsExpired = 0;
+            for (long[] write : mRecentWrites) {
+                numCodePointsExpired += (int) write[1];
+                if (numCodePointsExpired >= numCodePointsToExpire) {
+                    sendEmptyMessageDelayed(ATTEMPT_SEND_TO_NETWORK,
+                            write[0] + MILLIS_PER_SECOND - now);
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Removes the writes which are more than one second old from the rate limit window. */
+    private void expireRecentWrites(long now) {
+        while (!mRecentWrites.isEmpty()
+                && mRecentWrites.peekFirst()[0] <= now - MILLIS_PER_SECOND) {
+            mRecentWriteCodepointCount -= (int) mRecentWrites.pollFirst()[1];
+        }
+    }
+
     public ImsRttTextHandler(Looper looper, NetworkWriter networkWriter) {
+        this(looper, networkWriter, MAX_CODEPOINTS_PER_SECOND, MAX_BUFFERING_DELAY_MILLIS,
+                MAX_BUFFERED_CHARACTER_COUNT);
+    }
+
+    /**
+     * @param maxCodepointsPerSecond the rate limit of the text sent to the network.
+     * @param maxBufferingDelayMillis the maximum time text is buffered before being sent, if
+     * the rate limit is not exceeded.
+     * @param maxBufferedCodepointCount the number of buffered codepoints which are sent without
+     * waiting for the buffering delay.
+     */
+    public ImsRttTextHandler(Looper looper, NetworkWriter networkWriter,
+            int maxCodepointsPerSecond, int maxBufferingDelayMillis,
+            int maxBufferedCodepointCount) {
         super(looper);
+        if (maxCodepointsPerSecond <= 0 || maxBufferingDelayMillis < 0
+                || maxBufferedCodepointCount <= 0) {
+            throw new IllegalArgumentException("Invalid RTT tuning: " + maxCodepointsPerSecond
+                    + "/" + maxBufferingDelayMillis + "/" + maxBufferedCodepointCount);
+        }
         mNetworkWriter = networkWriter;
+        mMaxCodepointsPerSecond = maxCodepointsPerSecond;
+        mMaxBufferingDelayMillis = maxBufferingDelayMillis;
+        mMaxBufferedCodepointCount = maxBufferedCodepointCount;
+    }
+
+    /**
+     * Queues text read from in-call, to be moved to the network buffer by the handler. Called
+     * from the reader thread.
+     */
+    @VisibleForTesting
+    public void onTextReadFromInCall(String text) {
+        // Only post a message if the handler has not been told about pending text yet,
+        // so that fast typing does not post one message per read.
+        boolean wasEmpty;
+        synchronized (mTextReadFromInCall) {
+            wasEmpty = mTextReadFromInCall.length() == 0;
+            mTextReadFromInCall.append(text);
+        }
+        if (wasEmpty) {
+            obtainMessage(APPEND_TO_NETWORK_BUFFER).sendToTarget();
+        }
+    }
+
+    /** @return the time used for the rate limit window, in the uptime base. */
+    @VisibleForTesting
+    protected long getTimeMillis() {
+        return SystemClock.uptimeMillis();
     }
 
     public void sendToInCall(String msg) {
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.uicc;
+
+import android.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Sequential reader of BER-TLV data objects stored in a byte array.
+ *
+ * <p>The reader covers a range of the array and never copies it: {@link #getValue()} returns a
+ * reader over the value of the last data object, backed by the same array. Tags up to 0xFF are
+ * read as one byte, larger tags (e.g. 0xFF40) as two bytes.
+ *
+ * <p>Length encoding is in GPC_Specification_2.2.1: 11.1.5 APDU Message and Data Length. Length
+ * field could be either 1 byte if length < 128, or multiple bytes with first byte specifying how
+ * many bytes are used for length, followed by length bytes.
+ *
+ * <p>Malformed data is reported with {@link IllegalArgumentException}.
+ *
+ * {@hide}
+ */
+final class BerTlvReader {
+    private static final int SINGLE_BYTE_MAX_LENGTH = 0x80;
+
+    @NonNull private final byte[] mData;
+    private final int mEnd;
+    private int mOffset;
+
+    // Decoded fields of the last data object read.
+    private int mLengthFieldSize;
+    private int mValueOffset;
+    private int mLength;
+
+    /** Creates a reader over the whole array. */
+    BerTlvReader(@NonNull byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /** Creates a reader over {@code data[start, end)}. */
+    BerTlvReader(@NonNull byte[] data, int start, int end) {
+        if (start < 0 || start > end || end > data.length) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", " + end + ")");
+        }
+        mData = data;
+        mOffset = start;
+        mEnd = end;
+    }
+
+    /** @return {@code true} if there is still data to read. */
+    boolean hasRemaining() {
+        return mOffset < mEnd;
+    }
+
+    /** @return the next byte, which is the first byte of the next tag. */
+    int peekByte() {
+        if (!hasRemaining()) {
+            throw new IllegalArgumentException("No tag.");
+        }
+        return mData[mOffset] & 0xFF;
+    }
+
+    /** @return {@code true} if the next data object has the given tag. */
+    boolean nextTagIs(int tag) {
+        int tagSize = tagSize(tag);
+        if (mEnd - mOffset < tagSize) return false;
+        if (tagSize == 2) {
+            return (mData[mOffset] & 0xFF) == (tag >> 8)
+                    && (mData[mOffset + 1] & 0xFF) == (tag & 0xFF);
+        }
+        return (mData[mOffset] & 0xFF) == tag;
+    }
+
+    /**
+     * Decodes tag and length of the next data object, without requiring its value to be
+     * available and without moving to the next data object.
+     *
+     * @return the offset right after the end of the data object's value.
+     */
+    int readHeader(int tag) {
+        if (!nextTagIs(tag)) {
+            throw new IllegalArgumentException("Tags don't match.");
+        }
+        int index = mOffset + tagSize(tag);
+        if (index >= mEnd) {
+            throw new IllegalArgumentException("No length.");
+        }
+        int firstByte = mData[index] & 0xFF;
+        if (firstByte < SINGLE_BYTE_MAX_LENGTH) {
+            mLength = firstByte;
+            mLengthFieldSize = 1;
+        } else {
+            int numBytes = firstByte - SINGLE_BYTE_MAX_LENGTH;
+            if (numBytes == 0 || index + 1 + numBytes > mEnd) {
+                throw new IllegalArgumentException("Invalid length.");
+            }
+            long length = 0;
+            for (int i = 1; i <= numBytes; i++) {
+                length = (length << 8) | (mData[index + i] & 0xFF);
+                if (length > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Invalid length.");
+                }
+            }
+            mLength = (int) length;
+            mLengthFieldSize = 1 + numBytes;
+        }
+        mValueOffset = index + mLengthFieldSize;
+        return mValueOffset + mLength;
+    }
+
+    /**
+     * Reads the next data object, which must have the given tag, and moves to the data object
+     * following it. Its value is then available through the getters.
+     */
+    void read(int tag) {
+        int end = readHeader(tag);
+        if (end > mEnd || end < mValueOffset) {
+            throw new IllegalArgumentException("Not enough data.");
+        }
+        mOffset = end;
+    }
+
+    /** @return the number of bytes used by the length field of the last data object. */
+    int getLengthFieldSize() {
+        return mLengthFieldSize;
+    }
+
+    /** @return the offset in the backing array of the value of the last data object. */
+    int getValueOffset() {
+        return mValueOffset;
+    }
+
+    /** @return the length of the value of the last data object. */
+    int getLength() {
+        return mLength;
+    }
+
+    /** @return a reader over the value of the last data object, sharing the backing array. */
+    @NonNull
+    BerTlvReader getValue() {
+        return new BerTlvReader(mData, mValueOffset, mValueOffset + mLength);
+    }
+
+    /** @return a copy of the value of the last data object. */
+    @NonNull
+    byte[] copyValue() {
+        return Arrays.copyOfRange(mData, mValueOffset, mValueOffset + mLength);
+    }
+
+    /** @return the value of the last data object decoded as a string. */
+    @NonNull
+    String getValueAsString() {
+        return new String(mData, mValueOffset, mLength);
+    }
+
+    /** @return {@code true} if the value of the last data object equals {@code expected}. */
+    boolean valueEquals(@NonNull byte[] expected) {
+        if (mLength != expected.length) return false;
+        for (int i = 0; i < mLength; i++) {
+            if (mData[mValueOffset + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    /** @return the hex string of the remaining data, for logging. */
+    @Override
+    public String toString() {
+        return IccUtils.bytesToHexString(Arrays.copyOfRange(mData, mOffset, mEnd));
+    }
+
+    private static int tagSize(int tag) {
+        return tag > 0xFF ? 2 : 1;
+    }
+}
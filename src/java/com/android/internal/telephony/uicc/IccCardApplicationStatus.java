@@ -18,10 +18,13 @@ package com.android.internal.telephony.uicc;
 
 import android.compat.annotation.UnsupportedAppUsage;
 import android.os.Build;
+import android.text.TextUtils;
 
 import com.android.internal.telephony.uicc.IccCardStatus.PinState;
 import com.android.telephony.Rlog;
 
+import java.util.Objects;
+
 /**
  * See also RIL_AppStatus in include/telephony/ril.h
  *
@@ -163,6 +166,17 @@ public class IccCardApplicationStatus {
     public IccCardApplicationStatus() {
     }
 
+    public IccCardApplicationStatus(IccCardApplicationStatus other) {
+        app_type = other.app_type;
+        app_state = other.app_state;
+        perso_substate = other.perso_substate;
+        aid = other.aid;
+        app_label = other.app_label;
+        pin1_replaced = other.pin1_replaced;
+        pin1 = other.pin1;
+        pin2 = other.pin2;
+    }
+
     @UnsupportedAppUsage(maxTargetSdk = Build.VERSION_CODES.R, trackingBug = 170729553)
     public AppType AppTypeFromRILInt(int type) {
         AppType newType;
@@ -274,6 +288,32 @@ public class IccCardApplicationStatus {
         return newPinState;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        IccCardApplicationStatus that = (IccCardApplicationStatus) obj;
+        return (app_type == that.app_type)
+                && (app_state == that.app_state)
+                && (perso_substate == that.perso_substate)
+                && (TextUtils.equals(aid, that.aid))
+                && (TextUtils.equals(app_label, that.app_label))
+                && (pin1_replaced == that.pin1_replaced)
+                && (pin1 == that.pin1)
+                && (pin2 == that.pin2);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(app_type, app_state, perso_substate, aid, app_label, pin1_replaced,
+                pin1, pin2);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -19,11 +19,15 @@ package com.android.internal.telephony.uicc;
 import android.compat.annotation.UnsupportedAppUsage;
 import android.os.Build;
 import android.telephony.SubscriptionInfo;
+import android.text.TextUtils;
 
 import com.android.internal.telephony.uicc.IccSlotStatus.MultipleEnabledProfilesMode;
 import com.android.internal.telephony.util.TelephonyUtils;
 import com.android.telephony.Rlog;
 
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * See also RIL_CardStatus in include/telephony/ril.h
  *
@@ -93,6 +97,35 @@ public class IccCardStatus {
 
     public MultipleEnabledProfilesMode mSupportedMepMode = MultipleEnabledProfilesMode.NONE;
 
+    public IccCardStatus() {
+    }
+
+    /**
+     * Deep copy of another card status, so that it can be kept after the original is modified.
+     */
+    public IccCardStatus(IccCardStatus other) {
+        mCardState = other.mCardState;
+        mUniversalPinState = other.mUniversalPinState;
+        mGsmUmtsSubscriptionAppIndex = other.mGsmUmtsSubscriptionAppIndex;
+        mCdmaSubscriptionAppIndex = other.mCdmaSubscriptionAppIndex;
+        mImsSubscriptionAppIndex = other.mImsSubscriptionAppIndex;
+        atr = other.atr;
+        iccid = other.iccid;
+        eid = other.eid;
+        if (other.mApplications != null) {
+            mApplications = new IccCardApplicationStatus[other.mApplications.length];
+            for (int i = 0; i < mApplications.length; i++) {
+                if (other.mApplications[i] != null) {
+                    mApplications[i] = new IccCardApplicationStatus(other.mApplications[i]);
+                }
+            }
+        }
+        if (other.mSlotPortMapping != null) {
+            mSlotPortMapping = new IccSlotPortMapping(other.mSlotPortMapping);
+        }
+        mSupportedMepMode = other.mSupportedMepMode;
+    }
+
     /**
      * Set the MultipleEnabledProfilesMode according to the input mode.
      */
@@ -159,6 +192,36 @@ public class IccCardStatus {
         }
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        IccCardStatus that = (IccCardStatus) obj;
+        return (mCardState == that.mCardState)
+                && (mUniversalPinState == that.mUniversalPinState)
+                && (mGsmUmtsSubscriptionAppIndex == that.mGsmUmtsSubscriptionAppIndex)
+                && (mCdmaSubscriptionAppIndex == that.mCdmaSubscriptionAppIndex)
+                && (mImsSubscriptionAppIndex == that.mImsSubscriptionAppIndex)
+                && (TextUtils.equals(atr, that.atr))
+                && (TextUtils.equals(iccid, that.iccid))
+                && (TextUtils.equals(eid, that.eid))
+                && Arrays.equals(mApplications, that.mApplications)
+                && Objects.equals(mSlotPortMapping, that.mSlotPortMapping)
+                && (mSupportedMepMode == that.mSupportedMepMode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mCardState, mUniversalPinState, mGsmUmtsSubscriptionAppIndex,
+                mCdmaSubscriptionAppIndex, mImsSubscriptionAppIndex, atr, iccid, eid,
+                Arrays.hashCode(mApplications), mSlotPortMapping, mSupportedMepMode);
+    }
+
     @Override
     public String toString() {
         IccCardApplicationStatus app;
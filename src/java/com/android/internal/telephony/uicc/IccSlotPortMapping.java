@@ -18,6 +18,8 @@ package com.android.internal.telephony.uicc;
 
 import android.telephony.TelephonyManager;
 
+import java.util.Objects;
+
 public class IccSlotPortMapping {
 
     public int mPhysicalSlotIndex = UiccController.INVALID_SLOT_ID;
@@ -26,6 +28,29 @@ public class IccSlotPortMapping {
     public IccSlotPortMapping() {
     }
 
+    public IccSlotPortMapping(IccSlotPortMapping other) {
+        mPhysicalSlotIndex = other.mPhysicalSlotIndex;
+        mPortIndex = other.mPortIndex;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        IccSlotPortMapping that = (IccSlotPortMapping) obj;
+        return (mPhysicalSlotIndex == that.mPhysicalSlotIndex) && (mPortIndex == that.mPortIndex);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mPhysicalSlotIndex, mPortIndex);
+    }
+
     @Override
     public String toString() {
         return "{" + "physicalSlotIndex=" + mPhysicalSlotIndex + ", portIndex=" + mPortIndex + "}";
@@ -49,6 +49,7 @@ import android.os.AsyncResult;
 import android.os.Handler;
 import android.os.Message;
 import android.os.PersistableBundle;
+import android.os.SystemClock;
 import android.os.WorkSource;
 import android.provider.Settings;
 import android.security.keystore.KeyGenParameterSpec;
@@ -57,6 +58,7 @@ import android.telephony.TelephonyManager;
 import android.telephony.TelephonyManager.SimState;
 import android.util.Base64;
 import android.util.IndentingPrintWriter;
+import android.util.LocalLog;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -152,6 +154,13 @@ public class PinStorage extends Handler {
     private boolean mIsDeviceLocked;
     private boolean mLastCommitResult = true;
 
+    /** Cipher reused for all encryptions and decryptions, created on first use. */
+    @Nullable
+    private Cipher mCipher;
+
+    /** Latency of the recent unattended reboot preparations. */
+    private final LocalLog mLatencyLog = new LocalLog(16);
+
     /** Duration of the short-term key, in minutes. */
     @VisibleForTesting
     public int mShortTermSecretKeyDurationMinutes;
@@ -311,8 +320,10 @@ public class PinStorage extends Handler {
             return TelephonyManager.PREPARE_UNATTENDED_REBOOT_ERROR;
         }
 
+        long startTimeMillis = SystemClock.elapsedRealtime();
         int numSlots = getSlotCount();
         SparseArray<StoredPin> storedPins = loadPinInformation();
+        long loadedTimeMillis = SystemClock.elapsedRealtime();
 
         // Delete any previous short-term key, if present: a new one is created (if needed).
         deleteSecretKey(KEYSTORE_ALIAS_SHORT_TERM);
@@ -324,17 +335,20 @@ public class PinStorage extends Handler {
             mShortTermSecretKey =
                     initializeSecretKey(KEYSTORE_ALIAS_SHORT_TERM, /*createIfAbsent=*/ true);
         }
+        long keyTimeMillis = SystemClock.elapsedRealtime();
 
         @TelephonyManager.PrepareUnattendedRebootResult
         int result =  TelephonyManager.PREPARE_UNATTENDED_REBOOT_SUCCESS;
         int storedCount = 0;
         int notAvailableCount = 0;
 
+        // All the PINs are encrypted with the same key and committed to disk at once.
+        SharedPreferences.Editor editor = mIsDeviceLocked ? null : getSharedPreferences().edit();
         for (int slotId = 0; slotId < numSlots; slotId++) {
             StoredPin storedPin = storedPins.get(slotId);
             if (storedPin != null) {
                 storedPin.status = PinStatus.REBOOT_READY;
-                if (!savePinInformation(slotId, storedPin)) {
+                if (!savePinInformation(editor, slotId, storedPin)) {
                     result = TelephonyManager.PREPARE_UNATTENDED_REBOOT_ERROR;
                     break;
                 }
@@ -347,6 +361,16 @@ public class PinStorage extends Handler {
                 notAvailableCount++;
             }
         }
+        long encryptedTimeMillis = SystemClock.elapsedRealtime();
+        if (!commit(editor, result != TelephonyManager.PREPARE_UNATTENDED_REBOOT_ERROR)) {
+            result = TelephonyManager.PREPARE_UNATTENDED_REBOOT_ERROR;
+        }
+        long committedTimeMillis = SystemClock.elapsedRealtime();
+        mLatencyLog.log(String.format("prepareUnattendedReboot: result=%d pins=%d total=%dms"
+                        + " (load=%dms key=%dms encrypt=%dms commit=%dms)",
+                result, storedCount, committedTimeMillis - startTimeMillis,
+                loadedTimeMillis - startTimeMillis, keyTimeMillis - loadedTimeMillis,
+                encryptedTimeMillis - keyTimeMillis, committedTimeMillis - encryptedTimeMillis));
 
         // Generate metrics
         String callingPackage = workSource == null || workSource.size() == 0
@@ -400,9 +424,13 @@ public class PinStorage extends Handler {
                 initializeSecretKey(KEYSTORE_ALIAS_LONG_TERM_USER_AUTH, /*createIfAbsent=*/ true);
 
         // Save the PINs previously in RAM to disk, overwriting any PIN that might already exists.
+        SharedPreferences.Editor editor = getSharedPreferences().edit();
+        boolean result = true;
         for (int i = 0; i < storedPinInRam.size(); i++) {
-            savePinInformation(storedPinInRam.keyAt(i), storedPinInRam.valueAt(i));
+            result &= savePinInformation(
+                    editor, storedPinInRam.keyAt(i), storedPinInRam.valueAt(i));
         }
+        commit(editor, result);
 
         // At this point the module is fully initialized. Execute the start logic.
         onDeviceReady();
@@ -428,6 +456,8 @@ public class PinStorage extends Handler {
 
         int verificationReadyCount = 0;
         int slotCount = getSlotCount();
+        SharedPreferences.Editor editor = getSharedPreferences().edit();
+        boolean result = true;
         for (int slotId = 0; slotId < slotCount; slotId++) {
             // Read PIN information from storage
             StoredPin storedPin = loadPinInformation(slotId);
@@ -441,7 +471,7 @@ public class PinStorage extends Handler {
             if (storedPin.status == PinStatus.AVAILABLE) {
                 if (storedPin.bootCount != mBootCount) {
                     logd("Boot count [%d] does not match - remove PIN", slotId);
-                    savePinInformation(slotId, null);
+                    result &= savePinInformation(editor, slotId, null);
                     continue;
                 }
                 logd("Boot count [%d] matches - keep stored PIN", slotId);
@@ -452,10 +482,11 @@ public class PinStorage extends Handler {
             // (e.g. due to crash).
             if (storedPin.status == PinStatus.REBOOT_READY) {
                 storedPin.status = PinStatus.VERIFICATION_READY;
-                savePinInformation(slotId, storedPin);
+                result &= savePinInformation(editor, slotId, storedPin);
                 verificationReadyCount++;
             }
         }
+        commit(editor, result);
         if (verificationReadyCount > 0) {
             startTimer(TIMER_VALUE_AFTER_OTA_MILLIS);
         }
@@ -481,6 +512,8 @@ public class PinStorage extends Handler {
 
         int discardedPin = 0;
         int slotCount = getSlotCount();
+        SharedPreferences.Editor editor = mIsDeviceLocked ? null : getSharedPreferences().edit();
+        boolean result = true;
         for (int slotId = 0; slotId < slotCount; slotId++) {
             // Read PIN information from storage
             StoredPin storedPin = loadPinInformation(slotId);
@@ -492,7 +525,7 @@ public class PinStorage extends Handler {
             // OTA, but the SIM card is not detected on the device.
             if (storedPin.status == PinStatus.VERIFICATION_READY) {
                 logd("onTimerExpiration - Discarding PIN in slot %d", slotId);
-                savePinInformation(slotId, null);
+                result &= savePinInformation(editor, slotId, null);
                 discardedPin++;
                 continue;
             }
@@ -502,10 +535,11 @@ public class PinStorage extends Handler {
             if (storedPin.status == PinStatus.REBOOT_READY) {
                 logd("onTimerExpiration - Moving PIN in slot %d back to AVAILABLE", slotId);
                 storedPin.status = PinStatus.AVAILABLE;
-                savePinInformation(slotId, storedPin);
+                result &= savePinInformation(editor, slotId, storedPin);
                 continue;
             }
         }
+        commit(editor, result);
 
         // Delete short term key no matter the reason of the timer expiration.
         // This is done after loading the PIN information, so that it's possible to change
@@ -706,9 +740,7 @@ public class PinStorage extends Handler {
     @Nullable
     private StoredPin loadPinInformationFromDisk(
             int slotId, String key, @Nullable SecretKey secretKey) {
-        String base64encryptedPin =
-                mContext.getSharedPreferences(SHARED_PREFS_NAME, Context.MODE_PRIVATE)
-                    .getString(key + slotId, "");
+        String base64encryptedPin = getSharedPreferences().getString(key + slotId, "");
         if (!base64encryptedPin.isEmpty()) {
             try {
                 byte[] blob = Base64.decode(base64encryptedPin, Base64.DEFAULT);
@@ -757,6 +789,22 @@ public class PinStorage extends Handler {
      * @return true if the operation was successfully done, false otherwise.
      */
     private boolean savePinInformation(int slotId, @Nullable StoredPin storedPin) {
+        SharedPreferences.Editor editor = mIsDeviceLocked ? null : getSharedPreferences().edit();
+        boolean result = savePinInformation(editor, slotId, storedPin);
+        return commit(editor, result);
+    }
+
+    /**
+     * Stores the PIN information as part of a batch of changes in {@code editor}, that are
+     * written when the batch is committed with {@link #commit}.
+     *
+     * @param editor the editor collecting the changes, or null if the device is locked
+     * @param slotId the slot ID
+     * @param storedPin the PIN information to be stored
+     * @return true if the operation was successfully done, false otherwise.
+     */
+    private boolean savePinInformation(@Nullable SharedPreferences.Editor editor, int slotId,
+            @Nullable StoredPin storedPin) {
         // Populate the boot count
         if (storedPin != null) {
             storedPin.bootCount = mBootCount;
@@ -764,16 +812,13 @@ public class PinStorage extends Handler {
 
         // If the device is still locked, we can only save PINs in AVAILABLE state in RAM.
         // NOTE: at this point, there should not be any PIN in any other state.
-        if (mIsDeviceLocked) {
+        if (mIsDeviceLocked || editor == null) {
             return savePinInformationToRam(slotId, storedPin);
         }
 
         // Remove any prvious key related to this slot.
-        SharedPreferences.Editor editor =
-                mContext.getSharedPreferences(SHARED_PREFS_NAME, Context.MODE_PRIVATE)
-                    .edit()
-                    .remove(SHARED_PREFS_AVAILABLE_PIN_BASE_KEY + slotId)
-                    .remove(SHARED_PREFS_REBOOT_PIN_BASE_KEY + slotId);
+        editor.remove(SHARED_PREFS_AVAILABLE_PIN_BASE_KEY + slotId)
+                .remove(SHARED_PREFS_REBOOT_PIN_BASE_KEY + slotId);
 
         boolean result = true;
         if (storedPin != null) {
@@ -790,11 +835,31 @@ public class PinStorage extends Handler {
         } else {
             logv("Deleting PIN for slot %d (if existed)", slotId);
         }
+        return result;
+    }
 
+    /**
+     * Writes a batch of changes collected with {@link #savePinInformation} to disk, with a single
+     * synchronous commit for all the slots in the batch.
+     *
+     * If the commit fails, the stored PIN information is not read anymore, as it might be stale.
+     *
+     * @param editor the editor collecting the changes, or null if the device is locked
+     * @param result the result of the operations collected in the batch
+     * @return true if all the operations were successfully done, false otherwise.
+     */
+    private boolean commit(@Nullable SharedPreferences.Editor editor, boolean result) {
+        if (editor == null) {
+            return result;
+        }
         mLastCommitResult = editor.commit() && result;
         return mLastCommitResult;
     }
 
+    private SharedPreferences getSharedPreferences() {
+        return mContext.getSharedPreferences(SHARED_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
     /**
      * Store the PIN information to a specific file in non-volatile memory.
      *
@@ -931,8 +996,7 @@ public class PinStorage extends Handler {
      * previous value.
      */
     private int saveNumberOfCachedPins(int storedCount) {
-        SharedPreferences sharedPrefs =
-                mContext.getSharedPreferences(SHARED_PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences sharedPrefs = getSharedPreferences();
 
         int previousValue = sharedPrefs.getInt(SHARED_PREFS_STORED_PINS, 0);
         sharedPrefs.edit().putInt(SHARED_PREFS_STORED_PINS, storedCount).commit();
@@ -1149,6 +1213,17 @@ public class PinStorage extends Handler {
         }
     }
 
+    /**
+     * Returns the cipher used for encryption and decryption. The instance is created once and
+     * initialized again for each operation, which avoids the provider lookup every time.
+     */
+    private Cipher getCipher() throws Exception {
+        if (mCipher == null) {
+            mCipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        }
+        return mCipher;
+    }
+
     /** Returns the encrypted version of {@code input}, or an empty array in case of error. */
     private byte[] encrypt(SecretKey secretKey, byte[] input) {
         if (secretKey == null) {
@@ -1157,7 +1232,7 @@ public class PinStorage extends Handler {
         }
 
         try {
-            final Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+            final Cipher cipher = getCipher();
             cipher.init(Cipher.ENCRYPT_MODE, secretKey);
 
             EncryptedPin encryptedPin = new EncryptedPin();
@@ -1183,7 +1258,7 @@ public class PinStorage extends Handler {
             EncryptedPin encryptedPin = EncryptedPin.parseFrom(input);
             if (!ArrayUtils.isEmpty(encryptedPin.encryptedStoredPin)
                     && !ArrayUtils.isEmpty(encryptedPin.iv)) {
-                final Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+                final Cipher cipher = getCipher();
                 final GCMParameterSpec spec =
                         new GCMParameterSpec(GCM_PARAMETER_TAG_BIT_LEN, encryptedPin.iv);
                 cipher.init(Cipher.DECRYPT_MODE, secretKey, spec);
@@ -1228,6 +1303,10 @@ public class PinStorage extends Handler {
         for (int i = 0; i < slotCount; i++) {
             pw.println("isCacheAllowedByCarrier[" + i + "]=" + isCacheAllowedByCarrier(i));
         }
+        pw.println("Latency of unattended reboot preparation:");
+        pw.increaseIndent();
+        mLatencyLog.dump(fd, pw, args);
+        pw.decreaseIndent();
         if (VDBG) {
             SparseArray<StoredPin> storedPins = loadPinInformation();
             for (int i = 0; i < storedPins.size(); i++) {
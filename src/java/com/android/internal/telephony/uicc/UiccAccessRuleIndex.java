@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.uicc;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.content.pm.PackageInfo;
+import android.content.pm.Signature;
+import android.telephony.TelephonyManager;
+import android.telephony.UiccAccessRule;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable index of {@link UiccAccessRule}s keyed by certificate hash.
+ *
+ * <p>Checking a package against a list of access rules normally compares every certificate hash
+ * of the package with every rule. Rules are instead grouped by the upper-case hex string of their
+ * certificate hash, so a lookup only visits the rules sharing a certificate with the package and
+ * then checks their optional package name constraint.
+ */
+public final class UiccAccessRuleIndex {
+    private static final String SHA_1 = "SHA-1";
+    private static final String SHA_256 = "SHA-256";
+
+    // Length in bytes of a SHA-1 digest. Rules carrying such hashes also match on SHA-1.
+    private static final int SHA_1_LENGTH = 20;
+
+    /** Index without any rule. */
+    public static final UiccAccessRuleIndex EMPTY =
+            new UiccAccessRuleIndex(Collections.emptyList());
+
+    // Map of upper-case hex certificate hash -> rules with that certificate hash.
+    @NonNull private final Map<String, List<UiccAccessRule>> mRulesByCertHash;
+    private final int mSize;
+    private final boolean mHasSha1Rules;
+
+    /**
+     * Builds an index over the given rules. Rules without certificate hash are ignored since they
+     * can never match.
+     */
+    public UiccAccessRuleIndex(@NonNull Collection<UiccAccessRule> rules) {
+        Map<String, List<UiccAccessRule>> rulesByCertHash = new ArrayMap<>(rules.size());
+        int size = 0;
+        boolean hasSha1Rules = false;
+        for (UiccAccessRule rule : rules) {
+            String certHash = rule.getCertificateHexString();
+            if (certHash == null) continue;
+            List<UiccAccessRule> bucket = rulesByCertHash.get(certHash);
+            if (bucket == null) {
+                bucket = new ArrayList<>(1);
+                rulesByCertHash.put(certHash, bucket);
+            }
+            bucket.add(rule);
+            size++;
+            hasSha1Rules |= certHash.length() == SHA_1_LENGTH * 2;
+        }
+        mRulesByCertHash = rulesByCertHash;
+        mSize = size;
+        mHasSha1Rules = hasSha1Rules;
+    }
+
+    /** @return {@code true} if the index contains no rule. */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /** @return the number of indexed rules. */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns whether any indexed rule matches the certificate hash and package name, with the
+     * same semantics as {@link UiccAccessRule#matches(String, String)}.
+     *
+     * @param certHash upper-case hex string of the certificate hash, as returned by
+     *        {@link #getCertHashes(PackageInfo)}.
+     * @param packageName name of the package signed by the certificate.
+     */
+    public boolean matches(@Nullable String certHash, @Nullable String packageName) {
+        if (certHash == null) return false;
+        List<UiccAccessRule> rules = mRulesByCertHash.get(certHash);
+        if (rules == null) return false;
+        for (int i = 0; i < rules.size(); i++) {
+            String rulePackageName = rules.get(i).getPackageName();
+            if (TextUtils.isEmpty(rulePackageName) || rulePackageName.equals(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the carrier privilege status of a certificate and package name. Equivalent to
+     * checking {@link UiccAccessRule#getCarrierPrivilegeStatus(Signature, String)} on every
+     * indexed rule, but each digest of the signature is computed at most once.
+     */
+    public int getCarrierPrivilegeStatus(@NonNull Signature signature,
+            @Nullable String packageName) {
+        if (isEmpty()) return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+
+        // Check SHA-256 hash first, SHA-1 is only needed if some rule holds a SHA-1 hash.
+        if (matches(toHexString(UiccAccessRule.getCertHash(signature, SHA_256)), packageName)
+                || (mHasSha1Rules && matches(
+                        toHexString(UiccAccessRule.getCertHash(signature, SHA_1)), packageName))) {
+            return TelephonyManager.CARRIER_PRIVILEGE_STATUS_HAS_ACCESS;
+        }
+        return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+    }
+
+    /**
+     * Returns the carrier privilege status of a package. Equivalent to checking
+     * {@link UiccAccessRule#getCarrierPrivilegeStatus(PackageInfo)} on every indexed rule.
+     */
+    public int getCarrierPrivilegeStatus(@NonNull PackageInfo packageInfo) {
+        if (isEmpty()) return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+
+        for (Signature signature : UiccAccessRule.getSignatures(packageInfo)) {
+            int accessStatus = getCarrierPrivilegeStatus(signature, packageInfo.packageName);
+            if (accessStatus != TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS) {
+                return accessStatus;
+            }
+        }
+        return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+    }
+
+    /**
+     * Returns the upper-case hex SHA-1 and SHA-256 hashes of every signing certificate of the
+     * package, in the form expected by {@link #matches(String, String)}.
+     */
+    @NonNull
+    public static Set<String> getCertHashes(@NonNull PackageInfo packageInfo) {
+        List<Signature> signatures = UiccAccessRule.getSignatures(packageInfo);
+        Set<String> certs = new ArraySet<>(signatures.size() * 2);
+        for (Signature signature : signatures) {
+            certs.add(toHexString(UiccAccessRule.getCertHash(signature, SHA_1)));
+            certs.add(toHexString(UiccAccessRule.getCertHash(signature, SHA_256)));
+        }
+        return certs;
+    }
+
+    @Nullable
+    private static String toHexString(@Nullable byte[] hash) {
+        // IccUtils always produces upper-case hex digits, like UiccAccessRule does internally.
+        return IccUtils.bytesToHexString(hash);
+    }
+
+    @Override
+    public String toString() {
+        return "UiccAccessRuleIndex{size=" + mSize + ", certs=" + mRulesByCertHash.size() + "}";
+    }
+}
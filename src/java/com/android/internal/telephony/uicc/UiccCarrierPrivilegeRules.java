@@ -38,9 +38,9 @@ import com.android.telephony.Rlog;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -91,15 +91,17 @@ public class UiccCarrierPrivilegeRules extends Handler {
      *       DB
      */
     // Values from the data standard.
-    private static final String TAG_ALL_REF_AR_DO = "FF40";
-    private static final String TAG_REF_AR_DO = "E2";
-    private static final String TAG_REF_DO = "E1";
-    private static final String TAG_DEVICE_APP_ID_REF_DO = "C1";
-    private static final String TAG_PKG_REF_DO = "CA";
-    private static final String TAG_AR_DO = "E3";
-    private static final String TAG_PERM_AR_DO = "DB";
-    private static final String TAG_AID_REF_DO = "4F";
-    private static final String CARRIER_PRIVILEGE_AID = "FFFFFFFFFFFF";
+    private static final int TAG_ALL_REF_AR_DO = 0xFF40;
+    private static final int TAG_REF_AR_DO = 0xE2;
+    private static final int TAG_REF_DO = 0xE1;
+    private static final int TAG_DEVICE_APP_ID_REF_DO = 0xC1;
+    private static final int TAG_PKG_REF_DO = 0xCA;
+    private static final int TAG_AR_DO = 0xE3;
+    private static final int TAG_PERM_AR_DO = 0xDB;
+    private static final int TAG_AID_REF_DO = 0x4F;
+    private static final byte[] CARRIER_PRIVILEGE_AID =
+            new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                    (byte) 0xFF};
 
     private static final int EVENT_OPEN_LOGICAL_CHANNEL_DONE = 1;
     private static final int EVENT_TRANSMIT_LOGICAL_CHANNEL_DONE = 2;
@@ -117,7 +119,8 @@ public class UiccCarrierPrivilegeRules extends Handler {
     private static final int STATUS_CODE_CONDITION_NOT_SATISFIED = 0x6985;
     private static final int STATUS_CODE_APPLET_SELECT_FAILED = 0x6999;
 
-    // Used for parsing the data from the UICC.
+    // Used for parsing the data from the UICC, in ASCII HEX string form. The rules themselves are
+    // parsed from the raw bytes with BerTlvReader.
     public static class TLV {
         private static final int SINGLE_BYTE_MAX_LENGTH = 0x80;
         private String tag;
@@ -190,7 +193,11 @@ public class UiccCarrierPrivilegeRules extends Handler {
     @UnsupportedAppUsage(maxTargetSdk = Build.VERSION_CODES.R, trackingBug = 170729553)
     private AtomicInteger mState;
     private List<UiccAccessRule> mAccessRules;
-    private String mRules;
+    // Index of mAccessRules by certificate hash, built once the rules are loaded.
+    private volatile UiccAccessRuleIndex mAccessRuleIndex = UiccAccessRuleIndex.EMPTY;
+    // Raw rule bytes received so far, which may span several APDU responses.
+    private byte[] mRules = new byte[0];
+    private int mRulesLength;
     @UnsupportedAppUsage(maxTargetSdk = Build.VERSION_CODES.R, trackingBug = 170729553)
     private Message mLoadedCallback;
     // LocalLog buffer to hold important status messages for debugging.
@@ -220,7 +227,7 @@ public class UiccCarrierPrivilegeRules extends Handler {
         mState = new AtomicInteger(STATE_LOADING);
         mStatusMessage.log("Not loaded.");
         mLoadedCallback = loadedCallback;
-        mRules = "";
+        mRulesLength = 0;
         mAccessRules = new ArrayList<>();
 
         // Open logical channel with ARA_D.
@@ -231,8 +238,9 @@ public class UiccCarrierPrivilegeRules extends Handler {
     @VisibleForTesting
     public UiccCarrierPrivilegeRules(List<UiccAccessRule> rules) {
         mAccessRules = rules;
+        mAccessRuleIndex = new UiccAccessRuleIndex(rules);
         mState = new AtomicInteger(STATE_LOADED);
-        mRules = "";
+        mRulesLength = 0;
         mStatusMessage.log("Loaded from test rules.");
     }
 
@@ -292,14 +300,7 @@ public class UiccCarrierPrivilegeRules extends Handler {
             return TelephonyManager.CARRIER_PRIVILEGE_STATUS_ERROR_LOADING_RULES;
         }
 
-        for (UiccAccessRule ar : mAccessRules) {
-            int accessStatus = ar.getCarrierPrivilegeStatus(signature, packageName);
-            if (accessStatus != TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS) {
-                return accessStatus;
-            }
-        }
-
-        return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+        return mAccessRuleIndex.getCarrierPrivilegeStatus(signature, packageName);
     }
 
     /**
@@ -350,13 +351,7 @@ public class UiccCarrierPrivilegeRules extends Handler {
             return TelephonyManager.CARRIER_PRIVILEGE_STATUS_ERROR_LOADING_RULES;
         }
 
-        for (UiccAccessRule ar : mAccessRules) {
-            int accessStatus = ar.getCarrierPrivilegeStatus(packageInfo);
-            if (accessStatus != TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS) {
-                return accessStatus;
-            }
-        }
-        return TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+        return mAccessRuleIndex.getCarrierPrivilegeStatus(packageInfo);
     }
 
     /**
@@ -438,7 +433,7 @@ public class UiccCarrierPrivilegeRules extends Handler {
                     } else {
                         if (mAIDInUse == ARAD) {
                             // Open logical channel with ARA_M.
-                            mRules = "";
+                            mRulesLength = 0;
                             openChannel(ARAM);
                         }
                         if (mAIDInUse == ARAM) {
@@ -471,12 +466,11 @@ public class UiccCarrierPrivilegeRules extends Handler {
                     if (response.sw1 == 0x90 && response.sw2 == 0x00
                             && response.payload != null && response.payload.length > 0) {
                         try {
-                            mRules += IccUtils.bytesToHexString(response.payload)
-                                    .toUpperCase(Locale.US);
+                            appendRules(response.payload);
                             if (isDataComplete()) {
                                 //TODO: here's where AccessRules are being updated from the psim
                                 // b/139133814
-                                mAccessRules.addAll(parseRules(mRules));
+                                mAccessRules.addAll(parseRules(mRules, mRulesLength));
                                 if (mAIDInUse == ARAD) {
                                     mCheckedRules = true;
                                 } else {
@@ -528,7 +522,7 @@ public class UiccCarrierPrivilegeRules extends Handler {
                 log("EVENT_CLOSE_LOGICAL_CHANNEL_DONE");
                 if (mAIDInUse == ARAD) {
                     // Close logical channel with ARA_D and then open logical channel with ARA_M.
-                    mRules = "";
+                    mRulesLength = 0;
                     openChannel(ARAM);
                 }
                 break;
@@ -552,48 +546,57 @@ public class UiccCarrierPrivilegeRules extends Handler {
         }
     }
 
+    /*
+     * Appends a chunk of rule bytes read from the UICC.
+     */
+    private void appendRules(byte[] payload) {
+        if (mRulesLength + payload.length > mRules.length) {
+            mRules = Arrays.copyOf(mRules,
+                    Math.max(mRules.length * 2, mRulesLength + payload.length));
+        }
+        System.arraycopy(payload, 0, mRules, mRulesLength, payload.length);
+        mRulesLength += payload.length;
+    }
+
     /*
      * Check if all rule bytes have been read from UICC.
      * For long payload, we need to fetch it repeatly before start parsing it.
      */
     private boolean isDataComplete() {
-        log("isDataComplete mRules:" + mRules);
-        if (mRules.startsWith(TAG_ALL_REF_AR_DO)) {
-            TLV allRules = new TLV(TAG_ALL_REF_AR_DO);
-            String lengthBytes = allRules.parseLength(mRules);
-            log("isDataComplete lengthBytes: " + lengthBytes);
-            if (mRules.length() == TAG_ALL_REF_AR_DO.length() + lengthBytes.length() +
-                    allRules.length) {
-                log("isDataComplete yes");
-                return true;
-            } else {
-                log("isDataComplete no");
-                return false;
-            }
+        BerTlvReader allRules = new BerTlvReader(mRules, 0, mRulesLength);
+        if (DBG) log("isDataComplete mRules:" + allRules);
+        if (allRules.readHeader(TAG_ALL_REF_AR_DO) == mRulesLength) {
+            log("isDataComplete yes");
+            return true;
         } else {
-            throw new IllegalArgumentException("Tags don't match.");
+            log("isDataComplete no");
+            return false;
         }
     }
 
     /*
-     * Parses the rules from the input string.
+     * Parses the rules from the first length bytes of the input.
      */
-    private static List<UiccAccessRule> parseRules(String rules) {
-        log("Got rules: " + rules);
+    @VisibleForTesting
+    static List<UiccAccessRule> parseRules(byte[] rules, int length) {
+        BerTlvReader allRefArDo = new BerTlvReader(rules, 0, length);
+        if (DBG) log("Got rules: " + allRefArDo);
 
-        TLV allRefArDo = new TLV(TAG_ALL_REF_AR_DO); //FF40
-        allRefArDo.parse(rules, true);
+        allRefArDo.read(TAG_ALL_REF_AR_DO); //FF40
+        if (allRefArDo.hasRemaining()) {
+            throw new IllegalArgumentException("Did not consume all.");
+        }
 
-        String arDos = allRefArDo.value;
+        BerTlvReader arDos = allRefArDo.getValue();
         List<UiccAccessRule> accessRules = new ArrayList<>();
-        while (!arDos.isEmpty()) {
-            TLV refArDo = new TLV(TAG_REF_AR_DO); //E2
-            arDos = refArDo.parse(arDos, false);
-            UiccAccessRule accessRule = parseRefArdo(refArDo.value);
+        while (arDos.hasRemaining()) {
+            arDos.read(TAG_REF_AR_DO); //E2
+            BerTlvReader refArDo = arDos.getValue();
+            UiccAccessRule accessRule = parseRefArdo(refArDo);
             if (accessRule != null) {
                 accessRules.add(accessRule);
             } else {
-                Rlog.e(LOG_TAG, "Skip unrecognized rule." + refArDo.value);
+                Rlog.e(LOG_TAG, "Skip unrecognized rule." + arDos.getValue());
             }
         }
         return accessRules;
@@ -602,72 +605,68 @@ public class UiccCarrierPrivilegeRules extends Handler {
     /*
      * Parses a single rule.
      */
-    private static UiccAccessRule parseRefArdo(String rule) {
-        log("Got rule: " + rule);
+    private static UiccAccessRule parseRefArdo(BerTlvReader rule) {
+        if (DBG) log("Got rule: " + rule);
 
-        String certificateHash = null;
+        byte[] certificateHash = null;
         String packageName = null;
-        String tmp = null;
         long accessType = 0;
 
-        while (!rule.isEmpty()) {
-            if (rule.startsWith(TAG_REF_DO)) {
-                TLV refDo = new TLV(TAG_REF_DO); //E1
-                rule = refDo.parse(rule, false);
+        while (rule.hasRemaining()) {
+            if (rule.nextTagIs(TAG_REF_DO)) {
+                rule.read(TAG_REF_DO); //E1
+                BerTlvReader refDo = rule.getValue();
                 // Allow 4F tag with a default value "FF FF FF FF FF FF" to be compatible with
                 // devices having GP access control enforcer:
                 //  - If no 4F tag is present, it's a CP rule.
                 //  - If 4F tag has value "FF FF FF FF FF FF", it's a CP rule.
                 //  - If 4F tag has other values, it's not a CP rule and Android should ignore it.
-                TLV deviceDo = new TLV(TAG_DEVICE_APP_ID_REF_DO); //C1
-                if (refDo.value.startsWith(TAG_AID_REF_DO)) {
-                    TLV cpDo = new TLV(TAG_AID_REF_DO); //4F
-                    String remain = cpDo.parse(refDo.value, false);
-                    if (!cpDo.lengthBytes.equals("06") || !cpDo.value.equals(CARRIER_PRIVILEGE_AID)
-                            || remain.isEmpty() || !remain.startsWith(TAG_DEVICE_APP_ID_REF_DO)) {
+                if (refDo.nextTagIs(TAG_AID_REF_DO)) {
+                    refDo.read(TAG_AID_REF_DO); //4F
+                    if (refDo.getLengthFieldSize() != 1
+                            || !refDo.valueEquals(CARRIER_PRIVILEGE_AID)
+                            || !refDo.nextTagIs(TAG_DEVICE_APP_ID_REF_DO)) {
                         return null;
                     }
-                    tmp = deviceDo.parse(remain, false);
-                    certificateHash = deviceDo.value;
-                } else if (refDo.value.startsWith(TAG_DEVICE_APP_ID_REF_DO)) {
-                    tmp = deviceDo.parse(refDo.value, false);
-                    certificateHash = deviceDo.value;
-                } else {
+                } else if (!refDo.nextTagIs(TAG_DEVICE_APP_ID_REF_DO)) {
                     return null;
                 }
-                if (!tmp.isEmpty()) {
-                    if (!tmp.startsWith(TAG_PKG_REF_DO)) {
+                refDo.read(TAG_DEVICE_APP_ID_REF_DO); //C1
+                certificateHash = refDo.copyValue();
+                if (refDo.hasRemaining()) {
+                    if (!refDo.nextTagIs(TAG_PKG_REF_DO)) {
                         return null;
                     }
-                    TLV pkgDo = new TLV(TAG_PKG_REF_DO); //CA
-                    pkgDo.parse(tmp, true);
-                    packageName = new String(IccUtils.hexStringToBytes(pkgDo.value));
+                    refDo.read(TAG_PKG_REF_DO); //CA
+                    if (refDo.hasRemaining()) {
+                        throw new IllegalArgumentException("Did not consume all.");
+                    }
+                    packageName = refDo.getValueAsString();
                 } else {
                     packageName = null;
                 }
-            } else if (rule.startsWith(TAG_AR_DO)) {
-                TLV arDo = new TLV(TAG_AR_DO); //E3
-                rule = arDo.parse(rule, false);
+            } else if (rule.nextTagIs(TAG_AR_DO)) {
+                rule.read(TAG_AR_DO); //E3
                 // Skip all the irrelevant tags (All the optional tags here are two bytes
                 // according to the spec GlobalPlatform Secure Element Access Control).
-                String remain = arDo.value;
-                while (!remain.isEmpty() && !remain.startsWith(TAG_PERM_AR_DO)) {
-                    TLV tmpDo = new TLV(remain.substring(0, 2));
-                    remain = tmpDo.parse(remain, false);
+                BerTlvReader arDo = rule.getValue();
+                while (arDo.hasRemaining() && !arDo.nextTagIs(TAG_PERM_AR_DO)) {
+                    arDo.read(arDo.peekByte());
                 }
-                if (remain.isEmpty()) {
+                if (!arDo.hasRemaining()) {
                     return null;
                 }
-                TLV permDo = new TLV(TAG_PERM_AR_DO); //DB
-                permDo.parse(remain, true);
+                arDo.read(TAG_PERM_AR_DO); //DB
+                if (arDo.hasRemaining()) {
+                    throw new IllegalArgumentException("Did not consume all.");
+                }
             } else  {
                 // Spec requires it must be either TAG_REF_DO or TAG_AR_DO.
                 throw new RuntimeException("Invalid Rule type");
             }
         }
 
-        UiccAccessRule accessRule = new UiccAccessRule(
-                IccUtils.hexStringToBytes(certificateHash), packageName, accessType);
+        UiccAccessRule accessRule = new UiccAccessRule(certificateHash, packageName, accessType);
         return accessRule;
     }
 
@@ -675,6 +674,10 @@ public class UiccCarrierPrivilegeRules extends Handler {
      * Updates the state and notifies the UiccCard that the rules have finished loading.
      */
     private void updateState(int newState, String statusMessage) {
+        if (newState == STATE_LOADED) {
+            // Publish the index before the state, so readers never see LOADED with stale index.
+            mAccessRuleIndex = new UiccAccessRuleIndex(mAccessRules);
+        }
         mState.set(newState);
         if (mLoadedCallback != null) {
             mLoadedCallback.sendToTarget();
@@ -711,6 +714,7 @@ public class UiccCarrierPrivilegeRules extends Handler {
         } else {
             pw.println(" mAccessRules: null");
         }
+        pw.println("mAccessRuleIndex=" + mAccessRuleIndex);
         if (mUiccPkcs15 != null) {
             pw.println(" mUiccPkcs15: " + mUiccPkcs15);
             mUiccPkcs15.dump(fd, pw, args);
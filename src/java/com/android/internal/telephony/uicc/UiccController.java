@@ -167,6 +167,15 @@ public class UiccController extends Handler {
     private int[] mPhoneIdToSlotId;
     private boolean mIsSlotStatusSupported = true;
 
+    // Last card status applied for each phone. Modems may report the same card status again and
+    // again (e.g. while a SIM has a flaky contact), identical updates are then skipped instead of
+    // updating the whole slot/card/port/profile hierarchy and notifying registrants.
+    private AppliedCardStatus[] mLastAppliedCardStatus;
+
+    // Number of card and slot status updates skipped because nothing changed, for debugging.
+    private int mSuppressedCardStatusCount;
+    private int mSuppressedSlotStatusCount;
+
     // This maps the externally exposed card ID (int) to the internal card ID string (ICCID/EID).
     // The array index is the card ID (int).
     // This mapping exists to expose card-based functionality without exposing the EID, which is
@@ -287,6 +296,7 @@ public class UiccController extends Handler {
 
         mUiccSlots = new UiccSlot[numPhysicalSlots];
         mPhoneIdToSlotId = new int[mCis.length];
+        mLastAppliedCardStatus = new AppliedCardStatus[mCis.length];
         int supportedModemCount = mTelephonyManager.getSupportedModemCount();
         mSimCardState = new int[supportedModemCount];
         mSimApplicationState = new int[supportedModemCount];
@@ -632,6 +642,7 @@ public class UiccController extends Handler {
                 case EVENT_RADIO_UNAVAILABLE:
                     if (DBG) log("EVENT_RADIO_UNAVAILABLE, dispose card");
                     sLastSlotStatus = null;
+                    mLastAppliedCardStatus[phoneId] = null;
                     UiccSlot uiccSlot = getUiccSlotForPhone(phoneId);
                     if (uiccSlot != null) {
                         uiccSlot.onRadioStateUnavailable(phoneId);
@@ -667,6 +678,7 @@ public class UiccController extends Handler {
 
         // Resize array.
         mPhoneIdToSlotId = copyOf(mPhoneIdToSlotId, newActiveModemCount);
+        mLastAppliedCardStatus = copyOf(mLastAppliedCardStatus, newActiveModemCount);
 
         // Register for new active modem for ss -> ds switch.
         // For ds -> ss switch, there's no need to unregister as the mCis should unregister
@@ -1067,6 +1079,16 @@ public class UiccController extends Handler {
             slotId = index;
         }
 
+        int radioState = mCis[index].getRadioState();
+        AppliedCardStatus lastApplied = mLastAppliedCardStatus[index];
+        if (lastApplied != null && mPhoneIdToSlotId[index] == slotId
+                && lastApplied.matches(status, mUiccSlots[slotId], radioState)) {
+            mSuppressedCardStatusCount++;
+            log("onGetIccCardStatusDone: No change in card status for phoneId-" + index
+                    + ", suppressed=" + mSuppressedCardStatusCount);
+            return;
+        }
+
         mPhoneIdToSlotId[index] = slotId;
 
         if (VDBG) logPhoneIdToSlotIdMapping();
@@ -1080,6 +1102,8 @@ public class UiccController extends Handler {
         }
 
         mUiccSlots[slotId].update(mCis[index], status, index, slotId);
+        mLastAppliedCardStatus[index] = new AppliedCardStatus(status, mUiccSlots[slotId],
+                radioState);
 
         UiccCard card = mUiccSlots[slotId].getUiccCard();
         if (card == null) {
@@ -1327,12 +1351,16 @@ public class UiccController extends Handler {
         ArrayList<IccSlotStatus> status = (ArrayList<IccSlotStatus>) ar.result;
 
         if (!slotStatusChanged(status)) {
-            log("onGetSlotStatusDone: No change in slot status");
+            mSuppressedSlotStatusCount++;
+            log("onGetSlotStatusDone: No change in slot status, suppressed="
+                    + mSuppressedSlotStatusCount);
             return;
         }
         logWithLocalLog("onGetSlotStatusDone: " + status);
 
         sLastSlotStatus = status;
+        // Slot updates may dispose cards and ports, so the next card status must be applied.
+        Arrays.fill(mLastAppliedCardStatus, null);
 
         int numActivePorts = 0;
         boolean isDefaultEuiccCardIdSet = false;
@@ -1509,6 +1537,32 @@ public class UiccController extends Handler {
         return false;
     }
 
+    /**
+     * A card status along with the slot and radio state it was applied to. Applying an identical
+     * card status to the same slot in the same radio state does not change anything.
+     */
+    private static final class AppliedCardStatus {
+        // Copy of the applied status, since the original instance may be modified by the sender.
+        @NonNull private final IccCardStatus mStatus;
+        @NonNull private final UiccSlot mSlot;
+        private final int mRadioState;
+
+        AppliedCardStatus(@NonNull IccCardStatus status, @NonNull UiccSlot slot, int radioState) {
+            mStatus = new IccCardStatus(status);
+            mSlot = slot;
+            mRadioState = radioState;
+        }
+
+        boolean matches(@NonNull IccCardStatus status, @Nullable UiccSlot slot, int radioState) {
+            if (mSlot != slot || mRadioState != radioState || !mStatus.equals(status)) {
+                return false;
+            }
+            // The card may have been disposed in the meantime, e.g. by a slot status update.
+            return slot.getUiccCard() != null || status.mCardState == null
+                    || !status.mCardState.isCardPresent();
+        }
+    }
+
     private void logPhoneIdToSlotIdMapping() {
         log("mPhoneIdToSlotId mapping:");
         for (int i = 0; i < mPhoneIdToSlotId.length; i++) {
@@ -1570,7 +1624,9 @@ public class UiccController extends Handler {
             configManager.updateConfigForPhoneId(index, IccCardConstants.INTENT_VALUE_ICC_UNKNOWN);
         }
 
-        // The card status could have changed. Get the latest state.
+        // The card status could have changed. Get the latest state, and apply it even if it is
+        // identical to the last one since applications may have been reset.
+        mLastAppliedCardStatus[index] = null;
         mCis[index].getIccCardStatus(obtainMessage(EVENT_GET_ICC_STATUS_DONE, index));
     }
 
@@ -1812,6 +1868,8 @@ public class UiccController extends Handler {
         pw.println("mDefaultEuiccCardId=" + mDefaultEuiccCardId);
         pw.println("mPhoneIdToSlotId=" + Arrays.toString(mPhoneIdToSlotId));
         pw.println("mUseRemovableEsimAsDefault=" + mUseRemovableEsimAsDefault);
+        pw.println("mSuppressedCardStatusCount=" + mSuppressedCardStatusCount);
+        pw.println("mSuppressedSlotStatusCount=" + mSuppressedSlotStatusCount);
         pw.println("mUiccSlots: size=" + mUiccSlots.length);
         pw.increaseIndent();
         for (int i = 0; i < mUiccSlots.length; i++) {
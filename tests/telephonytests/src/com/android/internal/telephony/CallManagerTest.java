@@ -258,4 +258,48 @@ public class CallManagerTest extends TelephonyTest {
                 CallManager.getInstance().getServiceState());
         CallManager.getInstance().unregisterPhone(mSecondPhone);
     }
+
+    @Test @SmallTest
+    public void testGetCallsBySubId() throws Exception {
+        GsmCdmaCall secondFgCall = mock(GsmCdmaCall.class);
+        GsmCdmaCall secondBgCall = mock(GsmCdmaCall.class);
+        GsmCdmaCall secondRingingCall = mock(GsmCdmaCall.class);
+        doReturn(secondFgCall).when(mSecondPhone).getForegroundCall();
+        doReturn(secondBgCall).when(mSecondPhone).getBackgroundCall();
+        doReturn(secondRingingCall).when(mSecondPhone).getRingingCall();
+        for (GsmCdmaCall call : new GsmCdmaCall[] {secondFgCall, secondBgCall,
+                secondRingingCall}) {
+            doReturn(mSecondPhone).when(call).getPhone();
+            doReturn(Call.State.IDLE).when(call).getState();
+            doReturn(true).when(call).isIdle();
+        }
+        doReturn(0).when(mPhone).getSubId();
+        doReturn(1).when(mSecondPhone).getSubId();
+        doReturn(PhoneConstants.State.IDLE).when(mPhone).getState();
+        doReturn(PhoneConstants.State.IDLE).when(mSecondPhone).getState();
+        CallManager.getInstance().registerPhone(mSecondPhone);
+        processAllMessages();
+
+        // An active call on the second sub is not returned for the first one
+        doReturn(Call.State.ACTIVE).when(secondFgCall).getState();
+        doReturn(false).when(secondFgCall).isIdle();
+        doReturn(PhoneConstants.State.OFFHOOK).when(mSecondPhone).getState();
+        assertEquals(secondFgCall, CallManager.getInstance().getActiveFgCall(1));
+        assertEquals(mFgCall, CallManager.getInstance().getActiveFgCall(0));
+        assertEquals(PhoneConstants.State.OFFHOOK, CallManager.getInstance().getState(1));
+        assertEquals(PhoneConstants.State.IDLE, CallManager.getInstance().getState(0));
+
+        // A disconnecting call is returned if there is no active call on the sub
+        doReturn(Call.State.DISCONNECTING).when(secondBgCall).getState();
+        assertEquals(secondBgCall, CallManager.getInstance().getFirstActiveBgCall(1));
+        assertEquals(mBgCall, CallManager.getInstance().getFirstActiveBgCall(0));
+
+        doReturn(Call.State.INCOMING).when(mRingingCall).getState();
+        doReturn(false).when(mRingingCall).isIdle();
+        doReturn(PhoneConstants.State.RINGING).when(mPhone).getState();
+        assertEquals(mRingingCall, CallManager.getInstance().getFirstActiveRingingCall(0));
+        assertEquals(secondRingingCall, CallManager.getInstance().getFirstActiveRingingCall(1));
+        assertEquals(PhoneConstants.State.RINGING, CallManager.getInstance().getState(0));
+        CallManager.getInstance().unregisterPhone(mSecondPhone);
+    }
 }
@@ -17,6 +17,7 @@ package com.android.internal.telephony;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
@@ -24,6 +25,8 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -41,6 +44,8 @@ import androidx.test.filters.MediumTest;
 import androidx.test.filters.SmallTest;
 
 import com.android.internal.telephony.PhoneInternalInterface.DialArgs;
+import com.android.internal.telephony.metrics.TelephonyMetrics;
+import com.android.internal.telephony.metrics.VoiceCallSessionStats;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -52,6 +57,8 @@ import org.mockito.ArgumentCaptor;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 @RunWith(AndroidTestingRunner.class)
 @TestableLooper.RunWithLooper
@@ -236,6 +243,58 @@ public class GsmCdmaCallTrackerTest extends TelephonyTest {
 
     }
 
+    /**
+     * Replays call list polls while several calls are live, and checks that only the connections
+     * which changed are reported to the metrics.
+     */
+    @Test
+    @MediumTest
+    public void testRepeatedPollsDuringMultipartyCall() throws Exception {
+        testMOCallSwitch();
+        GsmCdmaConnection heldConnection =
+                (GsmCdmaConnection) mCTUT.mBackgroundCall.getConnections().get(0);
+        GsmCdmaConnection dialingConnection =
+                (GsmCdmaConnection) mCTUT.mForegroundCall.getConnections().get(0);
+        TelephonyMetrics metrics = mock(TelephonyMetrics.class);
+        replaceInstance(GsmCdmaCallTracker.class, "mMetrics", mCTUT, metrics);
+        reset(mVoiceCallSessionStats);
+
+        // Only the dialing connection changes, the held one is not reported
+        mSimulatedCommands.progressConnectingCallState();
+        processAllMessages();
+        assertEquals(GsmCdmaCall.State.ALERTING, mCTUT.mForegroundCall.getState());
+        assertEquals(GsmCdmaCall.State.HOLDING, mCTUT.mBackgroundCall.getState());
+        assertEquals(List.of(dialingConnection), captureRilCallList(metrics));
+
+        mSimulatedCommands.progressConnectingToActive();
+        processAllMessages();
+        mCTUT.conference();
+        processAllMessages();
+        assertEquals(GsmCdmaCall.State.ACTIVE, mCTUT.mForegroundCall.getState());
+        assertEquals(2, mCTUT.mForegroundCall.getConnections().size());
+        reset(mVoiceCallSessionStats, metrics);
+
+        for (int i = 0; i < 20; i++) {
+            mSimulatedCommands.mCallStateRegistrants.notifyRegistrants();
+            processAllMessages();
+        }
+        // The call list did not change
+        verify(mVoiceCallSessionStats, never()).onRilCallListChanged(any());
+        verify(metrics, never()).writeRilCallList(anyInt(), any(), any());
+
+        // Hold the conference, both connections change
+        try {
+            mCTUT.switchWaitingOrHoldingAndActive();
+        } catch (Exception ex) {
+            Assert.fail("unexpected exception thrown" + ex.getMessage());
+        }
+        processAllMessages();
+        List<GsmCdmaConnection> changedConnections = captureRilCallList(metrics);
+        assertEquals(2, changedConnections.size());
+        assertTrue(changedConnections.contains(heldConnection));
+        assertTrue(changedConnections.contains(dialingConnection));
+    }
+
     /**
      * Test that we can set up a ringing call. If a timeout occurs something probably went wrong.
      */
@@ -476,5 +535,19 @@ public class GsmCdmaCallTrackerTest extends TelephonyTest {
         }
         fail("Expected otasp call state exception");
     }
-}
 
+    /**
+     * Verifies that a single call list was reported to the metrics since the last reset, the same
+     * to {@link TelephonyMetrics} and {@link VoiceCallSessionStats}, and returns it.
+     */
+    private List<GsmCdmaConnection> captureRilCallList(TelephonyMetrics metrics) {
+        ArgumentCaptor<ArrayList<GsmCdmaConnection>> metricsCaptor =
+                ArgumentCaptor.forClass(ArrayList.class);
+        verify(metrics, times(1)).writeRilCallList(eq(mPhone.getPhoneId()),
+                metricsCaptor.capture(), any());
+        ArgumentCaptor<List<GsmCdmaConnection>> statsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mVoiceCallSessionStats, times(1)).onRilCallListChanged(statsCaptor.capture());
+        assertEquals(metricsCaptor.getValue(), statsCaptor.getValue());
+        return statsCaptor.getValue();
+    }
+}
@@ -78,6 +78,7 @@ import android.telephony.CellIdentityGsm;
 import android.telephony.CellularIdentifierDisclosure;
 import android.telephony.LinkCapacityEstimate;
 import android.telephony.NetworkRegistrationInfo;
+import android.telephony.PhysicalChannelConfig;
 import android.telephony.RadioAccessFamily;
 import android.telephony.SecurityAlgorithmUpdate;
 import android.telephony.ServiceState;
@@ -3183,6 +3184,55 @@ public class GsmCdmaPhoneTest extends TelephonyTest {
                 any(Message.class));
     }
 
+    @Test
+    @SmallTest
+    public void testNotifyPhysicalChannelConfigFilteredByChangedFields() {
+        final int eventAllFields = 1;
+        final int eventBandOnly = 2;
+        List<Integer> events = new ArrayList<>();
+        Handler handler = new Handler(mPhoneUT.getLooper()) {
+            @Override
+            public void handleMessage(Message msg) {
+                events.add(msg.what);
+            }
+        };
+        mPhoneUT.registerForPhysicalChannelConfig(handler, eventAllFields, null);
+        mPhoneUT.registerForPhysicalChannelConfig(handler, eventBandOnly, null,
+                PhysicalChannelConfigChangeDetector.FIELD_BAND);
+        List<PhysicalChannelConfig> configs = new ArrayList<>();
+        configs.add(new PhysicalChannelConfig.Builder()
+                .setNetworkType(TelephonyManager.NETWORK_TYPE_NR)
+                .setBand(41)
+                .build());
+
+        // A change of a field the band registrant does not ask for only reaches the others.
+        mPhoneUT.notifyPhysicalChannelConfig(configs,
+                PhysicalChannelConfigChangeDetector.FIELD_CHANNEL);
+        processAllMessages();
+        assertEquals(List.of(eventAllFields), events);
+        verify(mNotifier).notifyPhysicalChannelConfig(mPhoneUT, configs);
+
+        // A band change reaches both registrants.
+        events.clear();
+        mPhoneUT.notifyPhysicalChannelConfig(configs,
+                PhysicalChannelConfigChangeDetector.FIELD_BAND
+                        | PhysicalChannelConfigChangeDetector.FIELD_CHANNEL);
+        processAllMessages();
+        assertEquals(2, events.size());
+        assertTrue(events.contains(eventAllFields));
+        assertTrue(events.contains(eventBandOnly));
+
+        // An identical list reaches no registrant and is not sent to the listeners.
+        events.clear();
+        clearInvocations(mNotifier);
+        mPhoneUT.notifyPhysicalChannelConfig(configs, 0 /* changedFields */);
+        processAllMessages();
+        assertTrue(events.isEmpty());
+        verify(mNotifier, never()).notifyPhysicalChannelConfig(any(), any());
+
+        mPhoneUT.unregisterForPhysicalChannelConfig(handler);
+    }
+
     private void sendRadioAvailableToPhone(GsmCdmaPhone phone) {
         phone.sendMessage(phone.obtainMessage(EVENT_RADIO_AVAILABLE,
                 new AsyncResult(null, new int[]{ServiceState.RIL_RADIO_TECHNOLOGY_GSM}, null)));
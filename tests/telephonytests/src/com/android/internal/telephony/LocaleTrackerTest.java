@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.reset;
@@ -95,7 +96,7 @@ public class LocaleTrackerTest extends TelephonyTest {
             Message m = invocation.getArgument(1);
             AsyncResult.forMessage(m, Arrays.asList(mCellInfo), null);
             m.sendToTarget();
-            return null; }).when(mPhone).requestCellInfoUpdate(any(), any());
+            return null; }).when(mPhone).requestCellInfoUpdate(any(), any(), anyLong());
 
         doReturn(true).when(mPhone).isRadioOn();
         processAllMessages();
@@ -246,7 +247,7 @@ public class LocaleTrackerTest extends TelephonyTest {
             Message m = invocation.getArgument(1);
             AsyncResult.forMessage(m, Collections.emptyList(), null);
             m.sendToTarget();
-            return null; }).when(mPhone).requestCellInfoUpdate(any(), any());
+            return null; }).when(mPhone).requestCellInfoUpdate(any(), any(), anyLong());
 
         doReturn(true).when(mPhone).isRadioOn();
         sendServiceState(ServiceState.STATE_OUT_OF_SERVICE);
@@ -285,7 +286,7 @@ public class LocaleTrackerTest extends TelephonyTest {
             Message m = invocation.getArgument(1);
             AsyncResult.forMessage(m, Collections.emptyList(), null);
             m.sendToTarget();
-            return null; }).when(mPhone).requestCellInfoUpdate(any(), any());
+            return null; }).when(mPhone).requestCellInfoUpdate(any(), any(), anyLong());
 
         sendServiceState(ServiceState.STATE_OUT_OF_SERVICE);
         processAllMessages();
@@ -17,12 +17,14 @@
 package com.android.internal.telephony;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import android.content.Context;
 
 import androidx.test.InstrumentationRegistry;
 import androidx.test.filters.SmallTest;
 
+import com.android.internal.telephony.MccTable.MccEntry;
 import com.android.internal.telephony.MccTable.MccMnc;
 import com.android.internal.telephony.util.LocaleUtils;
 
@@ -116,5 +118,34 @@ public class MccTableTest {
         assertEquals(2, MccTable.smallestDigitsMccForMnc(0));
         // mcc not defined, hence default
         assertEquals(2, MccTable.smallestDigitsMccForMnc(2000));
+        assertEquals(3, MccTable.smallestDigitsMccForMnc(new StringBuilder("312")));
+        assertEquals(2, MccTable.smallestDigitsMccForMnc("abc"));
+    }
+
+    @SmallTest
+    @Test
+    public void testCountryCodeForMccString() throws Exception {
+        assertEquals("lu", MccTable.countryCodeForMcc(new StringBuilder("270")));
+        assertEquals("lu", MccTable.countryCodeForMcc("0270"));
+        assertEquals("lu", MccTable.countryCodeForMcc("+270"));
+        assertEquals("", MccTable.countryCodeForMcc("-270"));
+        assertEquals("", MccTable.countryCodeForMcc("27a"));
+        assertEquals("", MccTable.countryCodeForMcc("+"));
+        assertEquals("", MccTable.countryCodeForMcc(""));
+        assertEquals("", MccTable.countryCodeForMcc("99999999999999999999270"));
+    }
+
+    @SmallTest
+    @Test
+    public void testEntryForMccMatchesTable() throws Exception {
+        for (int mcc = -1; mcc <= 1000; mcc++) {
+            MccEntry expected = null;
+            for (MccEntry entry : MccTable.sTable) {
+                if (entry.mMcc == mcc) {
+                    expected = entry;
+                }
+            }
+            assertSame(expected, MccTable.entryForMcc(mcc));
+        }
     }
 }
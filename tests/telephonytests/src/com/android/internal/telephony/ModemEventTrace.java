@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.os.SystemClock;
+import android.telephony.CellInfo;
+import android.telephony.PhysicalChannelConfig;
+import android.telephony.SignalStrength;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * A timestamped sequence of modem indications, e.g. recorded during a drive test, which can be
+ * replayed through {@link SimulatedCommands} to exercise the modules listening to the radio.
+ *
+ * <p>Replay is deterministic: each event is applied, then the test settles the handlers before
+ * the next one is applied. The time between events is not waited for, but handed to the test
+ * which can move its clock forward.
+ */
+public final class ModemEventTrace {
+    /** Voice and data registration state and radio technology, followed by a poll. */
+    public static final int EVENT_REGISTRATION = 0;
+    /** {@link SignalStrength} indication. */
+    public static final int EVENT_SIGNAL_STRENGTH = 1;
+    /** {@link CellInfo} list indication. */
+    public static final int EVENT_CELL_INFO = 2;
+    /** {@link PhysicalChannelConfig} list indication. */
+    public static final int EVENT_PHYSICAL_CHANNEL_CONFIG = 3;
+    private static final int EVENT_TYPE_COUNT = 4;
+
+    /** A modem indication. */
+    public static final class Event {
+        public final long timeMillis;
+        public final int type;
+        public final Object payload;
+
+        private Event(long timeMillis, int type, Object payload) {
+            this.timeMillis = timeMillis;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        @Override
+        public String toString() {
+            return "Event{time=" + timeMillis + ", type=" + type + ", payload=" + payload + "}";
+        }
+    }
+
+    /** Registration state, as set in {@link SimulatedCommands} before polling. */
+    private static final class Registration {
+        final int regState;
+        final int voiceRat;
+        final int dataRat;
+
+        Registration(int regState, int voiceRat, int dataRat) {
+            this.regState = regState;
+            this.voiceRat = voiceRat;
+            this.dataRat = dataRat;
+        }
+
+        @Override
+        public String toString() {
+            return "Registration{regState=" + regState + ", voiceRat=" + voiceRat
+                    + ", dataRat=" + dataRat + "}";
+        }
+    }
+
+    /** Statistics of a replay. */
+    public static final class Result {
+        public final int eventCount;
+        public final long elapsedNanos;
+        /** Number of registrant lists notified by the service state polls. */
+        public final int pollStateNotificationCount;
+        /** Number of service state changes broadcast to the listeners. */
+        public final int serviceStateBroadcastCount;
+        private final int[] mEventCountByType;
+
+        private Result(int eventCount, long elapsedNanos, int[] eventCountByType,
+                int pollStateNotificationCount, int serviceStateBroadcastCount) {
+            this.eventCount = eventCount;
+            this.elapsedNanos = elapsedNanos;
+            mEventCountByType = eventCountByType;
+            this.pollStateNotificationCount = pollStateNotificationCount;
+            this.serviceStateBroadcastCount = serviceStateBroadcastCount;
+        }
+
+        /** @return the number of events of the given {@code EVENT_*} type replayed. */
+        public int getEventCount(int type) {
+            return mEventCountByType[type];
+        }
+
+        /** @return the number of events replayed per second of processing. */
+        public double getEventsPerSecond() {
+            return elapsedNanos == 0 ? 0 : eventCount * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{events=" + eventCount
+                    + ", registration=" + getEventCount(EVENT_REGISTRATION)
+                    + ", signalStrength=" + getEventCount(EVENT_SIGNAL_STRENGTH)
+                    + ", cellInfo=" + getEventCount(EVENT_CELL_INFO)
+                    + ", physicalChannelConfig=" + getEventCount(EVENT_PHYSICAL_CHANNEL_CONFIG)
+                    + ", pollStateNotifications=" + pollStateNotificationCount
+                    + ", serviceStateBroadcasts=" + serviceStateBroadcastCount
+                    + ", elapsedMillis=" + elapsedNanos / 1000000
+                    + ", eventsPerSecond=" + (long) getEventsPerSecond() + "}";
+        }
+    }
+
+    /** Builder of a trace. Events must be added in chronological order. */
+    public static final class Builder {
+        private final List<Event> mEvents = new ArrayList<>();
+
+        public Builder addRegistration(long timeMillis, int regState, int voiceRat,
+                int dataRat) {
+            return add(timeMillis, EVENT_REGISTRATION,
+                    new Registration(regState, voiceRat, dataRat));
+        }
+
+        public Builder addSignalStrength(long timeMillis, SignalStrength signalStrength) {
+            return add(timeMillis, EVENT_SIGNAL_STRENGTH, signalStrength);
+        }
+
+        public Builder addCellInfo(long timeMillis, List<CellInfo> cellInfos) {
+            return add(timeMillis, EVENT_CELL_INFO, cellInfos);
+        }
+
+        public Builder addPhysicalChannelConfig(long timeMillis,
+                List<PhysicalChannelConfig> configs) {
+            return add(timeMillis, EVENT_PHYSICAL_CHANNEL_CONFIG, configs);
+        }
+
+        private Builder add(long timeMillis, int type, Object payload) {
+            if (!mEvents.isEmpty() && timeMillis < mEvents.get(mEvents.size() - 1).timeMillis) {
+                throw new IllegalArgumentException("Event at " + timeMillis + " is out of order");
+            }
+            mEvents.add(new Event(timeMillis, type, payload));
+            return this;
+        }
+
+        public ModemEventTrace build() {
+            return new ModemEventTrace(new ArrayList<>(mEvents));
+        }
+    }
+
+    private final List<Event> mEvents;
+
+    private ModemEventTrace(List<Event> events) {
+        mEvents = Collections.unmodifiableList(events);
+    }
+
+    /** @return the events of the trace, in chronological order. */
+    public List<Event> getEvents() {
+        return mEvents;
+    }
+
+    /**
+     * Replays the trace as fast as the listeners process it.
+     *
+     * @param commands the commands the listeners are registered with.
+     * @param sst the service state tracker whose notifications are counted.
+     * @param advanceTime called with the time between two events, before the second one is
+     * applied, so that the test can move its clock forward.
+     * @param settle called after each event, to wait until the listeners have processed it.
+     * @return the statistics of the replay.
+     */
+    public Result replay(SimulatedCommands commands, ServiceStateTracker sst,
+            LongConsumer advanceTime, Runnable settle) {
+        int[] eventCountByType = new int[EVENT_TYPE_COUNT];
+        int pollStateNotificationCount = sst.getPollStateNotificationCount();
+        int serviceStateBroadcastCount = sst.getServiceStateBroadcastCount();
+        long lastTimeMillis = mEvents.isEmpty() ? 0 : mEvents.get(0).timeMillis;
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (Event event : mEvents) {
+            if (event.timeMillis > lastTimeMillis) {
+                advanceTime.accept(event.timeMillis - lastTimeMillis);
+                lastTimeMillis = event.timeMillis;
+            }
+            apply(commands, event);
+            settle.run();
+            eventCountByType[event.type]++;
+        }
+        return new Result(mEvents.size(), SystemClock.elapsedRealtimeNanos() - start,
+                eventCountByType,
+                sst.getPollStateNotificationCount() - pollStateNotificationCount,
+                sst.getServiceStateBroadcastCount() - serviceStateBroadcastCount);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void apply(SimulatedCommands commands, Event event) {
+        switch (event.type) {
+            case EVENT_REGISTRATION:
+                Registration registration = (Registration) event.payload;
+                commands.setVoiceRegState(registration.regState);
+                commands.setVoiceRadioTech(registration.voiceRat);
+                commands.setDataRegState(registration.regState);
+                commands.setDataRadioTech(registration.dataRat);
+                commands.notifyNetworkStateChanged();
+                break;
+            case EVENT_SIGNAL_STRENGTH:
+                commands.setSignalStrength((SignalStrength) event.payload);
+                commands.notifySignalStrength();
+                break;
+            case EVENT_CELL_INFO:
+                commands.notifyCellInfoList((List<CellInfo>) event.payload);
+                break;
+            case EVENT_PHYSICAL_CHANNEL_CONFIG:
+                commands.notifyPhysicalChannelConfig((List<PhysicalChannelConfig>) event.payload);
+                break;
+            default:
+                throw new IllegalStateException("Unknown event type " + event.type);
+        }
+    }
+}
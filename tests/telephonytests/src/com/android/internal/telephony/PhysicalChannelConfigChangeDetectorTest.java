@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.internal.telephony;
+
+import static com.android.internal.telephony.PhysicalChannelConfigChangeDetector.FIELD_ALL;
+import static com.android.internal.telephony.PhysicalChannelConfigChangeDetector.FIELD_BAND;
+import static com.android.internal.telephony.PhysicalChannelConfigChangeDetector.FIELD_CHANNEL;
+import static com.android.internal.telephony.PhysicalChannelConfigChangeDetector.FIELD_PHYSICAL_CELL_ID;
+import static com.android.internal.telephony.PhysicalChannelConfigChangeDetector.getChangedFields;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.telephony.PhysicalChannelConfig;
+import android.telephony.TelephonyManager;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/** Unit test for {@link PhysicalChannelConfigChangeDetector}. */
+@SmallTest
+public class PhysicalChannelConfigChangeDetectorTest {
+
+    private static PhysicalChannelConfig createConfig(int pci, int band, int channelNumber) {
+        return new PhysicalChannelConfig.Builder()
+                .setCellConnectionStatus(PhysicalChannelConfig.CONNECTION_PRIMARY_SERVING)
+                .setCellBandwidthDownlinkKhz(20000)
+                .setNetworkType(TelephonyManager.NETWORK_TYPE_NR)
+                .setPhysicalCellId(pci)
+                .setBand(band)
+                .setDownlinkChannelNumber(channelNumber)
+                .setContextIds(new int[] {1})
+                .build();
+    }
+
+    @Test
+    public void testNullAndSizeChanges() {
+        List<PhysicalChannelConfig> configs = List.of(createConfig(1, 41, 100));
+
+        assertThat(getChangedFields(null, null)).isEqualTo(0);
+        assertThat(getChangedFields(null, configs)).isEqualTo(FIELD_ALL);
+        assertThat(getChangedFields(configs, null)).isEqualTo(FIELD_ALL);
+        assertThat(getChangedFields(configs, List.of())).isEqualTo(FIELD_ALL);
+        assertThat(getChangedFields(configs,
+                List.of(createConfig(1, 41, 100), createConfig(2, 41, 100))))
+                .isEqualTo(FIELD_ALL);
+    }
+
+    @Test
+    public void testFieldChanges() {
+        List<PhysicalChannelConfig> configs =
+                List.of(createConfig(1, 41, 100), createConfig(2, 41, 100));
+
+        assertThat(getChangedFields(configs,
+                List.of(createConfig(1, 41, 100), createConfig(2, 41, 100)))).isEqualTo(0);
+        assertThat(getChangedFields(configs,
+                List.of(createConfig(1, 41, 200), createConfig(2, 41, 100))))
+                .isEqualTo(FIELD_CHANNEL);
+        assertThat(getChangedFields(configs,
+                List.of(createConfig(1, 41, 100), createConfig(3, 77, 100))))
+                .isEqualTo(FIELD_PHYSICAL_CELL_ID | FIELD_BAND);
+    }
+}
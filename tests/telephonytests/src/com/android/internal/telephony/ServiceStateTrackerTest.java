@@ -45,6 +45,7 @@ import static org.mockito.Mockito.when;
 import android.app.Notification;
 import android.app.NotificationManager;
 import android.content.ComponentName;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
@@ -53,6 +54,7 @@ import android.content.pm.PackageManager;
 import android.content.pm.ServiceInfo;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.AsyncResult;
 import android.os.Bundle;
 import android.os.Handler;
@@ -64,6 +66,7 @@ import android.os.Process;
 import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.WorkSource;
+import android.provider.Telephony;
 import android.telephony.AccessNetworkConstants;
 import android.telephony.CarrierConfigManager;
 import android.telephony.CellIdentity;
@@ -75,7 +78,12 @@ import android.telephony.CellIdentityTdscdma;
 import android.telephony.CellIdentityWcdma;
 import android.telephony.CellInfo;
 import android.telephony.CellInfoGsm;
+import android.telephony.CellSignalStrengthCdma;
 import android.telephony.CellSignalStrengthGsm;
+import android.telephony.CellSignalStrengthLte;
+import android.telephony.CellSignalStrengthNr;
+import android.telephony.CellSignalStrengthTdscdma;
+import android.telephony.CellSignalStrengthWcdma;
 import android.telephony.INetworkService;
 import android.telephony.LteVopsSupportInfo;
 import android.telephony.NetworkRegistrationInfo;
@@ -83,12 +91,15 @@ import android.telephony.NetworkService;
 import android.telephony.NrVopsSupportInfo;
 import android.telephony.PhysicalChannelConfig;
 import android.telephony.ServiceState;
+import android.telephony.SignalStrength;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 import android.telephony.cdma.CdmaCellLocation;
 import android.telephony.gsm.GsmCellLocation;
 import android.telephony.ims.stub.ImsRegistrationImplBase;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
 import android.text.TextUtils;
 import android.util.Pair;
 
@@ -123,6 +134,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class ServiceStateTrackerTest extends TelephonyTest {
@@ -825,6 +837,57 @@ public class ServiceStateTrackerTest extends TelephonyTest {
         assertEquals(sst.getAllCellInfo(), list);
     }
 
+    @Test
+    @MediumTest
+    public void testReplayModemEventTrace() {
+        sst.registerForVoiceRoamingOn(mTestHandler, EVENT_DATA_ROAMING_ON, null);
+        doReturn(true).when(mPhone).isPhoneTypeGsm();
+
+        ArrayList<CellInfo> cellInfos = new ArrayList<>();
+        cellInfos.add(getCellInfoGsm());
+        ModemEventTrace.Builder builder = new ModemEventTrace.Builder();
+        for (int i = 0; i < 10; i++) {
+            long time = i * 1000L;
+            builder.addRegistration(time, i % 2 == 0
+                            ? NetworkRegistrationInfo.REGISTRATION_STATE_HOME
+                            : NetworkRegistrationInfo.REGISTRATION_STATE_ROAMING,
+                    ServiceState.RIL_RADIO_TECHNOLOGY_LTE, ServiceState.RIL_RADIO_TECHNOLOGY_LTE)
+                    .addSignalStrength(time + 200, new SignalStrength(
+                            new CellSignalStrengthCdma(),
+                            new CellSignalStrengthGsm(-70 - i, 0, CellInfo.UNAVAILABLE),
+                            new CellSignalStrengthWcdma(),
+                            new CellSignalStrengthTdscdma(),
+                            new CellSignalStrengthLte(),
+                            new CellSignalStrengthNr()))
+                    .addCellInfo(time + 400, cellInfos)
+                    .addPhysicalChannelConfig(time + 600, List.of(
+                            new PhysicalChannelConfig.Builder()
+                                    .setCellConnectionStatus(
+                                            PhysicalChannelConfig.CONNECTION_PRIMARY_SERVING)
+                                    .setCellBandwidthDownlinkKhz(20000)
+                                    .setNetworkType(TelephonyManager.NETWORK_TYPE_LTE)
+                                    .setPhysicalCellId(i)
+                                    .build()));
+        }
+
+        ModemEventTrace.Result result = builder.build().replay(mSimulatedCommands, sst,
+                millis -> {
+                    moveTimeForward(millis);
+                    processAllMessages();
+                }, () -> waitForLastHandlerAction(mSSTTestHandler.getThreadHandler()));
+        logd("testReplayModemEventTrace: " + result);
+
+        assertEquals(40, result.eventCount);
+        assertEquals(10, result.getEventCount(ModemEventTrace.EVENT_REGISTRATION));
+        assertEquals(cellInfos, sst.getAllCellInfo());
+        // Roaming turns on in every other registration.
+        verify(mTestHandler, times(5)).sendMessageAtTime(any(Message.class), anyLong());
+        // Each of the 9 roaming changes is broadcast, and notifies the service state, voice
+        // roaming and data roaming registrants.
+        assertTrue(result.serviceStateBroadcastCount >= 9);
+        assertTrue(result.pollStateNotificationCount >= 27);
+    }
+
     private static class CellInfoHandler extends Handler {
         // Need to define this here so that it's accessible
         public List<CellInfo> cellInfoResult;
@@ -866,6 +929,120 @@ public class ServiceStateTrackerTest extends TelephonyTest {
         assertEquals(getCellInfoGsm(), cih.cellInfoResult.get(0));
     }
 
+    @Test
+    @MediumTest
+    public void testGetCellInfoResponseWithMaxAge() throws InterruptedException {
+        ArrayList<CellInfo> list = new ArrayList();
+        list.add(getCellInfoGsm());
+        mSimulatedCommands.setCellInfoList(list);
+        sst.requestAllCellInfo(null, null);
+        waitForLastHandlerAction(mSSTTestHandler.getThreadHandler());
+        assertEquals(list, sst.getAllCellInfo());
+
+        // Fresh enough cached cell info is returned without querying the modem.
+        mSimulatedCommands.setCellInfoList(new ArrayList<>());
+        CellInfoHandler cih = new CellInfoHandler(mSSTTestHandler.getLooper());
+        Message rsp = cih.obtainMessage(0x7357);
+        sst.requestAllCellInfo(null, rsp, TimeUnit.MINUTES.toMillis(1));
+
+        synchronized (rsp) {
+            if (cih.cellInfoResult == null) rsp.wait(5000);
+        }
+        assertEquals(list, cih.cellInfoResult);
+    }
+
+    @Test
+    @MediumTest
+    public void testGetCellInfoResponseWithMaxAgeThrottled() throws InterruptedException {
+        ArrayList<CellInfo> list = new ArrayList();
+        list.add(getCellInfoGsm());
+        mSimulatedCommands.setCellInfoList(list);
+        sst.requestAllCellInfo(null, null);
+        waitForLastHandlerAction(mSSTTestHandler.getThreadHandler());
+        assertEquals(list, sst.getAllCellInfo());
+
+        // The cached cell info is older than the max age, but the modem was queried within the
+        // minimum interval between requests: the cached cell info is returned.
+        Thread.sleep(10);
+        ArrayList<CellInfo> newList = new ArrayList();
+        mSimulatedCommands.setCellInfoList(newList);
+        CellInfoHandler cih = new CellInfoHandler(mSSTTestHandler.getLooper());
+        Message rsp = cih.obtainMessage(0x7357);
+        sst.requestAllCellInfo(null, rsp, 1 /* maxAgeMillis */);
+
+        synchronized (rsp) {
+            if (cih.cellInfoResult == null) rsp.wait(5000);
+        }
+        assertEquals(list, cih.cellInfoResult);
+    }
+
+    /** Records the ServiceStateProvider inserts. */
+    private static class ServiceStateContentProvider extends MockContentProvider {
+        public final List<Uri> mInsertedUris = new ArrayList<>();
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            mInsertedUris.add(uri);
+            return uri;
+        }
+    }
+
+    private ServiceStateContentProvider replaceServiceStateContentProvider() {
+        ServiceStateContentProvider provider = new ServiceStateContentProvider();
+        ((MockContentResolver) mContext.getContentResolver()).addProvider(
+                Telephony.ServiceStateTable.AUTHORITY, provider);
+        return provider;
+    }
+
+    private static ServiceState createServiceState(String operatorNumeric) {
+        ServiceState ss = new ServiceState();
+        ss.setVoiceRegState(ServiceState.STATE_IN_SERVICE);
+        ss.setOperatorName("Test", "Test", operatorNumeric);
+        return ss;
+    }
+
+    @Test
+    @SmallTest
+    public void testUpdateServiceStateToDbSkipsIdenticalState() {
+        ServiceStateContentProvider provider = replaceServiceStateContentProvider();
+        doReturn(5).when(mPhone).getSubId();
+
+        sst.updateServiceStateToDb(createServiceState("00101"));
+        assertEquals(1, provider.mInsertedUris.size());
+
+        // An equal state, in another instance, is not inserted again.
+        sst.updateServiceStateToDb(createServiceState("00101"));
+        assertEquals(1, provider.mInsertedUris.size());
+    }
+
+    @Test
+    @SmallTest
+    public void testUpdateServiceStateToDbChangedState() {
+        ServiceStateContentProvider provider = replaceServiceStateContentProvider();
+        doReturn(5).when(mPhone).getSubId();
+
+        sst.updateServiceStateToDb(createServiceState("00101"));
+        sst.updateServiceStateToDb(createServiceState("00102"));
+
+        assertEquals(2, provider.mInsertedUris.size());
+    }
+
+    @Test
+    @SmallTest
+    public void testUpdateServiceStateToDbSubIdChanged() {
+        ServiceStateContentProvider provider = replaceServiceStateContentProvider();
+        doReturn(5).when(mPhone).getSubId();
+        sst.updateServiceStateToDb(createServiceState("00101"));
+
+        // The same state is inserted for the new sub id.
+        doReturn(6).when(mPhone).getSubId();
+        sst.updateServiceStateToDb(createServiceState("00101"));
+
+        assertEquals(2, provider.mInsertedUris.size());
+        assertEquals(Telephony.ServiceStateTable.getUriForSubscriptionId(6),
+                provider.mInsertedUris.get(1));
+    }
+
     @Test
     @MediumTest
     public void testGetCellInfoResponseTimeout() throws InterruptedException {
@@ -48,6 +48,8 @@ import android.os.Message;
 import android.os.PersistableBundle;
 import android.telephony.AccessNetworkConstants;
 import android.telephony.CarrierConfigManager;
+import android.telephony.CellIdentityNr;
+import android.telephony.CellInfo;
 import android.telephony.CellSignalStrength;
 import android.telephony.CellSignalStrengthCdma;
 import android.telephony.CellSignalStrengthGsm;
@@ -61,6 +63,7 @@ import android.telephony.SignalThresholdInfo;
 import android.telephony.TelephonyManager;
 import android.testing.AndroidTestingRunner;
 import android.testing.TestableLooper;
+import android.util.Pair;
 
 import androidx.test.filters.MediumTest;
 
@@ -968,6 +971,46 @@ public class SignalStrengthControllerTest extends TelephonyTest {
         assertThat(msgCaptor.getValue().what).isEqualTo(ssChangedEvent);
     }
 
+    @Test
+    public void testSignalStrengthWithSameLevelsNotNotifiedWhileIdle() {
+        Handler mockRegistrant = Mockito.mock(Handler.class);
+        int ssChangedEvent = 0;
+        mSsc.registerForSignalStrengthChanged(mockRegistrant, ssChangedEvent, null);
+
+        sendSignalStrength(createLteSignalStrength(-114 /* rsrp */));
+        verify(mockRegistrant).sendMessageDelayed(any(Message.class), Mockito.anyLong());
+
+        // While idle, an update which doesn't change any level is not notified.
+        Mockito.clearInvocations(mockRegistrant);
+        when(mPhone.isDeviceIdle()).thenReturn(true);
+        SignalStrength ss = createLteSignalStrength(-113 /* rsrp */);
+        sendSignalStrength(ss);
+        assertEquals(ss, mSsc.getSignalStrength());
+        verify(mockRegistrant, never()).sendMessageDelayed(any(Message.class), Mockito.anyLong());
+
+        // It is notified when the device leaves idle.
+        when(mPhone.isDeviceIdle()).thenReturn(false);
+        mSsc.onDeviceIdleStateChanged(false);
+        processAllMessages();
+        verify(mockRegistrant).sendMessageDelayed(any(Message.class), Mockito.anyLong());
+    }
+
+    private SignalStrength createLteSignalStrength(int rsrp) {
+        return new SignalStrength(
+                new CellSignalStrengthCdma(),
+                new CellSignalStrengthGsm(),
+                new CellSignalStrengthWcdma(),
+                new CellSignalStrengthTdscdma(),
+                new CellSignalStrengthLte(
+                        -110, /* rssi */
+                        rsrp,
+                        -5, /* rsrq */
+                        0, /* rssnr */
+                        SignalStrength.INVALID, /* cqi */
+                        SignalStrength.INVALID /* ta */),
+                new CellSignalStrengthNr());
+    }
+
     @Test
     public void testSignalStrengthLevelUpdatedDueToCarrierConfigChanged() {
         Handler mockRegistrant = Mockito.mock(Handler.class);
@@ -1532,6 +1575,52 @@ public class SignalStrengthControllerTest extends TelephonyTest {
         }
     }
 
+    @Test
+    public void testArfcnRangesMatchFirstConfiguredRange() {
+        List<Pair<Integer, Integer>> ranges = List.of(
+                new Pair<>(100, 200), new Pair<>(150, 300), new Pair<>(120, 130),
+                new Pair<>(400, 400), new Pair<>(0, 50), new Pair<>(40, 60));
+        SignalStrengthController.ArfcnRanges arfcnRanges =
+                SignalStrengthController.ArfcnRanges.create(ranges);
+
+        assertEquals(ranges.size(), arfcnRanges.size());
+        for (int arfcn = -10; arfcn <= 500; arfcn++) {
+            int expected = -1;
+            for (int i = 0; i < ranges.size(); i++) {
+                if (arfcn >= ranges.get(i).first && arfcn <= ranges.get(i).second) {
+                    expected = i;
+                    break;
+                }
+            }
+            assertEquals("arfcn=" + arfcn, expected, arfcnRanges.indexOf(arfcn));
+        }
+        assertEquals(-1, SignalStrengthController.ArfcnRanges.create(List.of()).indexOf(0));
+    }
+
+    @Test
+    public void testUpdateServiceStateNrArfcnRsrpBoost() {
+        mBundle.putStringArray(CarrierConfigManager.KEY_BOOSTED_NRARFCNS_STRING_ARRAY,
+                new String[]{"1000-2000", "1500-2500"});
+        mBundle.putIntArray(CarrierConfigManager.KEY_NRARFCNS_RSRP_BOOST_INT_ARRAY,
+                new int[]{3, 5});
+        sendCarrierConfigUpdate();
+
+        CellIdentityNr cellIdentity = mock(CellIdentityNr.class);
+        doReturn(CellInfo.TYPE_NR).when(cellIdentity).getType();
+
+        doReturn(1800).when(cellIdentity).getNrarfcn();
+        mSsc.updateServiceStateArfcnRsrpBoost(mServiceState, cellIdentity);
+        verify(mServiceState).setArfcnRsrpBoost(3);
+
+        doReturn(2200).when(cellIdentity).getNrarfcn();
+        mSsc.updateServiceStateArfcnRsrpBoost(mServiceState, cellIdentity);
+        verify(mServiceState).setArfcnRsrpBoost(5);
+
+        doReturn(3000).when(cellIdentity).getNrarfcn();
+        mSsc.updateServiceStateArfcnRsrpBoost(mServiceState, cellIdentity);
+        verify(mServiceState).setArfcnRsrpBoost(0);
+    }
+
     private void sendCarrierConfigUpdate() {
         CarrierConfigManager mockConfigManager = Mockito.mock(CarrierConfigManager.class);
         when(mContext.getSystemService(Context.CARRIER_CONFIG_SERVICE))
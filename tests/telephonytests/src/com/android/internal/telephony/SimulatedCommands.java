@@ -47,6 +47,7 @@ import android.telephony.ImsiEncryptionInfo;
 import android.telephony.NetworkRegistrationInfo;
 import android.telephony.NetworkScanRequest;
 import android.telephony.PcoData;
+import android.telephony.PhysicalChannelConfig;
 import android.telephony.ServiceState;
 import android.telephony.SignalStrength;
 import android.telephony.SignalThresholdInfo;
@@ -2189,6 +2190,16 @@ public class SimulatedCommands extends BaseCommands
         }
     }
 
+    public void notifyCellInfoList(List<CellInfo> cellInfoList) {
+        mCellInfoList = cellInfoList;
+        mRilCellInfoListRegistrants.notifyRegistrants(new AsyncResult(null, cellInfoList, null));
+    }
+
+    public void notifyPhysicalChannelConfig(List<PhysicalChannelConfig> configs) {
+        mPhysicalChannelConfigurationRegistrants.notifyRegistrants(
+                new AsyncResult(null, configs, null));
+    }
+
     public void notifyImsNetworkStateChanged() {
         if(mImsNetworkStateChangedRegistrants != null) {
             mImsNetworkStateChangedRegistrants.notifyRegistrants();
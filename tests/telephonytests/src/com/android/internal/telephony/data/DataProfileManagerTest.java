@@ -19,6 +19,7 @@ package com.android.internal.telephony.data;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
@@ -1259,6 +1260,25 @@ public class DataProfileManagerTest extends TelephonyTest {
                 .setInitialAttachApn(any(DataProfile.class), eq(false), eq(null));
     }
 
+    @Test
+    public void testDataProfilesAtModemOnlySentWhenChanged() {
+        mDataProfileManagerUT.obtainMessage(3 /* EVENT_SIM_REFRESH */).sendToTarget();
+        mDataProfileManagerUT.obtainMessage(2 /* EVENT_APN_DATABASE_CHANGED */).sendToTarget();
+        processAllMessages();
+        Mockito.clearInvocations(mMockedWwanDataServiceManager);
+
+        // APN database changed but the data profiles stay the same.
+        mDataProfileManagerUT.obtainMessage(2 /* EVENT_APN_DATABASE_CHANGED */).sendToTarget();
+        processAllMessages();
+        verify(mMockedWwanDataServiceManager, Mockito.never())
+                .setDataProfile(any(), anyBoolean(), any());
+
+        // SIM refresh always sends the data profiles again.
+        mDataProfileManagerUT.obtainMessage(3 /* EVENT_SIM_REFRESH */).sendToTarget();
+        processAllMessages();
+        verify(mMockedWwanDataServiceManager).setDataProfile(any(), anyBoolean(), any());
+    }
+
     @Test
     public void testSimRemoval() {
         // This test case applies to the latest modem, see b/227579876.
@@ -1525,6 +1545,37 @@ public class DataProfileManagerTest extends TelephonyTest {
                         | ApnSetting.TYPE_FOTA | ApnSetting.TYPE_XCAP);
     }
 
+    @Test
+    public void testDedupeDataProfilesInterleaved() throws Exception {
+        List<DataProfile> dataProfiles = new ArrayList<>();
+        for (String apnName : new String[]{"apn1", "apn2", "apn1", "apn3", "apn2"}) {
+            dataProfiles.add(new DataProfile.Builder()
+                    .setApnSetting(new ApnSetting.Builder()
+                            .setEntryName(apnName)
+                            .setOperatorNumeric("123456")
+                            .setApnName(apnName)
+                            .setApnTypeBitmask(dataProfiles.size() < 2 ? ApnSetting.TYPE_DEFAULT
+                                    : ApnSetting.TYPE_XCAP)
+                            .setProtocol(ApnSetting.PROTOCOL_IPV4V6)
+                            .setRoamingProtocol(ApnSetting.PROTOCOL_IPV4V6)
+                            .setCarrierEnabled(true)
+                            .build())
+                    .build());
+        }
+
+        dedupeDataProfiles(dataProfiles);
+
+        // Profiles sharing an APN name are merged into the first one, the order is kept.
+        assertThat(dataProfiles.stream().map(dp -> dp.getApnSetting().getApnName()).toList())
+                .containsExactly("apn1", "apn2", "apn3").inOrder();
+        assertThat(dataProfiles.get(0).getApnSetting().getApnTypeBitmask())
+                .isEqualTo(ApnSetting.TYPE_DEFAULT | ApnSetting.TYPE_XCAP);
+        assertThat(dataProfiles.get(1).getApnSetting().getApnTypeBitmask())
+                .isEqualTo(ApnSetting.TYPE_DEFAULT | ApnSetting.TYPE_XCAP);
+        assertThat(dataProfiles.get(2).getApnSetting().getApnTypeBitmask())
+                .isEqualTo(ApnSetting.TYPE_XCAP);
+    }
+
     @Test
     public void testDefaultEmergencyDataProfileValid() {
         TelephonyNetworkRequest tnr = new TelephonyNetworkRequest(new NetworkRequest.Builder()
@@ -284,6 +284,43 @@ public class DomainSelectionControllerTest extends TelephonyTest {
         verify(mMockContext, times(1)).bindService(any(), any(), anyInt());
     }
 
+    /**
+     * Ensure that ensureBound rebinds right away after an untimely binder death, and that the
+     * automatic rebind does not occur anymore.
+     */
+    @SmallTest
+    @Test
+    public void testEnsureBoundAfterBinderDied() throws RemoteException {
+        ServiceConnection conn = bindAndConnectService();
+
+        conn.onBindingDied(null /*null*/);
+        waitForHandlerAction(mHandler, 1000);
+
+        assertTrue(mTestController.ensureBound());
+        verify(mMockContext, times(2)).bindService(any(), any(), anyInt());
+
+        long delay = BIND_RETRY.getStartDelay();
+        waitForHandlerActionDelayed(mHandler, delay, 2 * delay);
+        verify(mMockContext, times(2)).bindService(any(), any(), anyInt());
+    }
+
+    /**
+     * Ensure that ensureBound does not bind again while bound, nor after unbind.
+     */
+    @SmallTest
+    @Test
+    public void testEnsureBoundWhenBoundOrUnbound() throws RemoteException {
+        bindAndConnectService();
+
+        assertTrue(mTestController.ensureBound());
+        verify(mMockContext, times(1)).bindService(any(), any(), anyInt());
+
+        mTestController.unbind();
+
+        assertFalse(mTestController.ensureBound());
+        verify(mMockContext, times(1)).bindService(any(), any(), anyInt());
+    }
+
     /**
      * Ensure that calling unbind stops automatic rebind from occurring.
      */
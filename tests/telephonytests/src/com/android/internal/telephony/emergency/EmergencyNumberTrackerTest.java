@@ -18,6 +18,7 @@ package com.android.internal.telephony.emergency;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.any;
@@ -539,6 +540,49 @@ public class EmergencyNumberTrackerTest extends TelephonyTest {
         assertTrue(mEmergencyNumberTrackerMock2.getEmergencyCountryIso().equals("us"));
     }
 
+    /**
+     * Test the lookups by number match the emergency number list, including the numbers with
+     * prefix.
+     */
+    @Test
+    public void testLookupByNumberMatchesEmergencyNumberList() {
+        doReturn(mMockContext).when(mPhone).getContext();
+        doReturn(mContext.getAssets()).when(mMockContext).getAssets();
+        doReturn(mResources).when(mMockContext).getResources();
+
+        EmergencyNumberTracker emergencyNumberTracker = new EmergencyNumberTracker(
+                mPhone, mSimulatedCommands, mFeatureFlags);
+        emergencyNumberTracker.sendMessage(
+                emergencyNumberTracker.obtainMessage(
+                        1 /* EVENT_UNSOL_EMERGENCY_NUMBER_LIST */,
+                        new AsyncResult(null, mEmergencyNumberListTestSample, null)));
+        sendEmergencyNumberPrefix(emergencyNumberTracker);
+        emergencyNumberTracker.updateEmergencyCountryIsoAllPhones("us");
+        processAllMessages();
+
+        List<EmergencyNumber> emergencyNumberList = emergencyNumberTracker
+                .getEmergencyNumberList();
+        List<String> numbers = new ArrayList<>();
+        for (EmergencyNumber num : emergencyNumberList) {
+            numbers.add(num.getNumber());
+        }
+        numbers.add("55555");
+        for (String number : numbers) {
+            List<EmergencyNumber> expected = new ArrayList<>();
+            for (EmergencyNumber num : emergencyNumberList) {
+                if (num.getNumber().equals(number)) {
+                    expected.add(num);
+                }
+            }
+            assertEquals(expected, emergencyNumberTracker.getEmergencyNumbers(number));
+            assertEquals(expected.isEmpty() ? null : expected.get(0),
+                    emergencyNumberTracker.getEmergencyNumber(number));
+            assertEquals(!expected.isEmpty(), emergencyNumberTracker.isEmergencyNumber(number));
+        }
+        assertTrue(emergencyNumberTracker.isEmergencyNumber(
+                mEmergencyNumberPrefixTestSample[0] + CONFIG_EMERGENCY_NUMBER_ADDRESS));
+    }
+
     /**
      * In 1.4 or above HAL, we should use database number.
      */
@@ -772,6 +816,24 @@ public class EmergencyNumberTrackerTest extends TelephonyTest {
                 emergencyNumberTrackerMock.getEmergencyNumberList()));
     }
 
+    /**
+     * Test the asset and OTA databases are loaded once and shared.
+     */
+    @Test
+    public void testEmergencyNumberDatabaseLoadedOnce() throws Exception {
+        AssetManager assets = mContext.getAssets();
+        EmergencyNumberDatabase database = EmergencyNumberDatabase.getAssetDatabase(assets);
+        assertSame(database, EmergencyNumberDatabase.getAssetDatabase(assets));
+        assertFalse(database.getEccInfos("us").isEmpty());
+        assertEquals(database.getEccInfos("US"), database.getEccInfos("us"));
+        assertTrue(database.getEccInfos("zz").isEmpty());
+
+        File otaFile = new File(mLocalDownloadDirectory, EMERGENCY_NUMBER_DB_OTA_FILE);
+        EmergencyNumberDatabase otaDatabase = EmergencyNumberDatabase.getOtaDatabase(otaFile);
+        assertEquals(OTA_UNIT_TEST_EMERGENCY_NUMBER_DB_VERSION, otaDatabase.revision);
+        assertSame(otaDatabase, EmergencyNumberDatabase.getOtaDatabase(otaFile));
+    }
+
     /**
      * Test OTA Emergency Number Database Update Status.
      */
@@ -30,6 +30,7 @@ import static com.android.internal.telephony.emergency.EmergencyStateTracker.DEF
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
@@ -563,6 +564,80 @@ public class EmergencyStateTrackerTest extends TelephonyTest {
         verify(testPhone).setEmergencyMode(eq(MODE_EMERGENCY_WWAN), any(Message.class));
     }
 
+    /**
+     * Test that the time of each stage of the emergency call setup is recorded, in order, until
+     * the call is dialed.
+     */
+    @Test
+    @SmallTest
+    public void startEmergencyCall_recordsCallSetupStageTimes() {
+        EmergencyStateTracker emergencyStateTracker = setupEmergencyStateTracker(
+                true /* isSuplDdsSwitchRequiredForEmergencyCall */);
+        Phone testPhone = setupTestPhoneForEmergencyCall(true /* isRoaming */,
+                true /* isRadioOn */);
+        setUpAsyncResultForSetEmergencyMode(testPhone, E_REG_RESULT);
+
+        assertEquals(-1, emergencyStateTracker.getCallSetupStageDelayMillis(
+                EmergencyStateTracker.CALL_SETUP_STAGE_START));
+
+        CompletableFuture<Integer> unused = emergencyStateTracker.startEmergencyCall(testPhone,
+                mTestConnection1, false);
+        processAllMessages();
+
+        assertEquals(0, emergencyStateTracker.getCallSetupStageDelayMillis(
+                EmergencyStateTracker.CALL_SETUP_STAGE_START));
+        long radioReady = emergencyStateTracker.getCallSetupStageDelayMillis(
+                EmergencyStateTracker.CALL_SETUP_STAGE_RADIO_READY);
+        long ddsSwitched = emergencyStateTracker.getCallSetupStageDelayMillis(
+                EmergencyStateTracker.CALL_SETUP_STAGE_DDS_SWITCHED);
+        long emergencyModeSet = emergencyStateTracker.getCallSetupStageDelayMillis(
+                EmergencyStateTracker.CALL_SETUP_STAGE_EMERGENCY_MODE_SET);
+        assertTrue(radioReady >= 0);
+        assertTrue(ddsSwitched >= radioReady);
+        assertTrue(emergencyModeSet >= ddsSwitched);
+        assertEquals(-1, emergencyStateTracker.getCallSetupStageDelayMillis(
+                EmergencyStateTracker.CALL_SETUP_STAGE_TRANSPORT_SELECTED));
+        assertEquals(-1, emergencyStateTracker.getCallSetupStageDelayMillis(
+                EmergencyStateTracker.CALL_SETUP_STAGE_DIALED));
+
+        emergencyStateTracker.onEmergencyTransportChanged(
+                EmergencyStateTracker.EMERGENCY_TYPE_CALL, MODE_EMERGENCY_WWAN);
+        emergencyStateTracker.onEmergencyCallDomainUpdated(
+                PhoneConstants.PHONE_TYPE_IMS, mTestConnection1);
+
+        long transportSelected = emergencyStateTracker.getCallSetupStageDelayMillis(
+                EmergencyStateTracker.CALL_SETUP_STAGE_TRANSPORT_SELECTED);
+        assertTrue(transportSelected >= emergencyModeSet);
+        assertTrue(emergencyStateTracker.getCallSetupStageDelayMillis(
+                EmergencyStateTracker.CALL_SETUP_STAGE_DIALED) >= transportSelected);
+    }
+
+    /**
+     * Test that starting an emergency call rebinds the domain selection service if needed, and
+     * that no registration result is reported if setting the emergency mode fails.
+     */
+    @Test
+    @SmallTest
+    public void startEmergencyCall_setEmergencyModeFails_bindsDomainSelectionWithoutResult() {
+        EmergencyStateTracker emergencyStateTracker = setupEmergencyStateTracker(
+                true /* isSuplDdsSwitchRequiredForEmergencyCall */);
+        Phone testPhone = setupTestPhoneForEmergencyCall(true /* isRoaming */,
+                true /* isRadioOn */);
+        doAnswer((invocation) -> {
+            Message msg = (Message) invocation.getArguments()[1];
+            AsyncResult.forMessage(msg, null, new RuntimeException());
+            msg.sendToTarget();
+            return null;
+        }).when(testPhone).setEmergencyMode(anyInt(), any(Message.class));
+
+        CompletableFuture<Integer> unused = emergencyStateTracker.startEmergencyCall(testPhone,
+                mTestConnection1, false);
+        processAllMessages();
+
+        verify(mDomainSelectionResolver).ensureServiceBound();
+        assertNull(emergencyStateTracker.getEmergencyRegistrationResult());
+    }
+
     /**
      * Test that once EmergencyStateTracker handler receives message to exit emergency mode, it sets
      * IsInEmergencyCall to false.
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.gsm;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+/** Unit test for {@link MmiCodeTokenizer}. */
+@SmallTest
+public class MmiCodeTokenizerTest {
+    // Mostly MMI characters, so that a good part of the random strings are MMI codes.
+    private static final String FUZZ_CHARACTERS = "*#0123456789+,;pwN \n\u2028";
+
+    private static final String[] DIAL_STRINGS = {
+            "*21*+16505551212#", "**21*+16505551212*11#", "#21#", "*#21#", "##002#", "*31#",
+            "#31#6505551212", "*03*330*1234*5678*5678#", "*#43#", "*100#", "*400#1234#",
+            "6505551212", "911", "12", "*67911", "+16505551212", "*#06#", "**04*1234*4321*4321#"};
+
+    @Test
+    public void testParseSuppServiceCode() {
+        MmiCodeTokenizer.SuppServiceCode code =
+                MmiCodeTokenizer.parseSuppServiceCode("**21*+16505551212*11#6505551213");
+        assertThat(code.poundString).isEqualTo("**21*+16505551212*11#");
+        assertThat(code.action).isEqualTo("**");
+        assertThat(code.serviceCode).isEqualTo("21");
+        assertThat(code.sia).isEqualTo("+16505551212");
+        assertThat(code.sib).isEqualTo("11");
+        assertThat(code.sic).isNull();
+        assertThat(code.pwd).isNull();
+        assertThat(code.dialingNumber).isEqualTo("6505551213");
+
+        code = MmiCodeTokenizer.parseSuppServiceCode("*03**1234*5678*5678#");
+        assertThat(code.action).isEqualTo("*");
+        assertThat(code.serviceCode).isEqualTo("03");
+        assertThat(code.sia).isNull();
+        assertThat(code.sib).isEqualTo("1234");
+        assertThat(code.sic).isEqualTo("5678");
+        assertThat(code.pwd).isEqualTo("5678");
+        assertThat(code.dialingNumber).isNull();
+
+        assertThat(MmiCodeTokenizer.parseSuppServiceCode("*2#")).isNull();
+        assertThat(MmiCodeTokenizer.parseSuppServiceCode("*2222#")).isNull();
+        assertThat(MmiCodeTokenizer.parseSuppServiceCode("*21*1*2*3*4*5#")).isNull();
+        assertThat(MmiCodeTokenizer.parseSuppServiceCode("*21*1234")).isNull();
+        assertThat(MmiCodeTokenizer.parseSuppServiceCode("#*21#")).isNull();
+        assertThat(MmiCodeTokenizer.parseSuppServiceCode("*21#123\n4")).isNull();
+        assertThat(MmiCodeTokenizer.parseServiceCode("*#43#")).isEqualTo("43");
+        assertThat(MmiCodeTokenizer.parseServiceCode("6505551212")).isNull();
+    }
+
+    /**
+     * Checks that random dial strings are split the same way as by the regular expression used by
+     * {@link GsmMmiCode} and {@link com.android.internal.telephony.imsphone.ImsPhoneMmiCode}.
+     */
+    @Test
+    public void testParityWithPattern() {
+        Random random = new Random(0);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(20);
+            for (int j = 0; j < length; j++) {
+                // Favor the structural characters of the code.
+                int bound = random.nextInt(4) == 0 ? FUZZ_CHARACTERS.length() : 6;
+                sb.append(FUZZ_CHARACTERS.charAt(random.nextInt(bound)));
+            }
+            assertParity(sb.toString());
+        }
+        for (String dialString : DIAL_STRINGS) {
+            assertParity(dialString);
+        }
+    }
+
+    private static void assertParity(String dialString) {
+        Matcher m = GsmMmiCode.sPatternSuppService.matcher(dialString);
+        MmiCodeTokenizer.SuppServiceCode code = MmiCodeTokenizer.parseSuppServiceCode(dialString);
+        assertWithMessage("matches " + dialString).that(code != null).isEqualTo(m.matches());
+        if (code == null) return;
+        String[] expected = {
+                m.group(GsmMmiCode.MATCH_GROUP_POUND_STRING),
+                m.group(GsmMmiCode.MATCH_GROUP_ACTION),
+                m.group(GsmMmiCode.MATCH_GROUP_SERVICE_CODE),
+                emptyToNull(m.group(GsmMmiCode.MATCH_GROUP_SIA)),
+                emptyToNull(m.group(GsmMmiCode.MATCH_GROUP_SIB)),
+                emptyToNull(m.group(GsmMmiCode.MATCH_GROUP_SIC)),
+                emptyToNull(m.group(GsmMmiCode.MATCH_GROUP_PWD_CONFIRM)),
+                emptyToNull(m.group(GsmMmiCode.MATCH_GROUP_DIALING_NUMBER))};
+        String[] actual = {code.poundString, code.action, code.serviceCode, code.sia, code.sib,
+                code.sic, code.pwd, code.dialingNumber};
+        assertWithMessage("parts of " + dialString).that(Arrays.asList(actual))
+                .containsExactlyElementsIn(Arrays.asList(expected)).inOrder();
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+}
@@ -908,6 +908,43 @@ public class ImsResolverTest extends ImsTestBase {
         verify(deviceController2, times(1)).bind(eq(deviceFeatures2), any(SparseIntArray.class));
     }
 
+    /**
+     * Test that a dynamic ImsService is bound with the features it returned in its last query
+     * before the new query completes, and that the features of the new query are cached.
+     */
+    @Test
+    @SmallTest
+    public void testDeviceDynamicQueryBindsWithCachedFeatures() throws RemoteException {
+        List<ResolveInfo> info = new ArrayList<>();
+        info.add(getResolveInfo(TEST_DEVICE_DEFAULT_NAME, new HashSet<>(), true));
+        setupPackageQuery(info);
+        setupResolver(1 /*numSlots*/, TEST_DEVICE_DEFAULT_NAME.getPackageName(),
+                TEST_DEVICE_DEFAULT_NAME.getPackageName());
+        ImsServiceController deviceController = mock(ImsServiceController.class);
+        Map<String, ImsServiceController> controllerMap = new ArrayMap<>();
+        controllerMap.put(TEST_DEVICE_DEFAULT_NAME.getPackageName(), deviceController);
+        setImsServiceControllerFactory(controllerMap);
+        Set<ImsFeatureConfiguration.FeatureSlotPair> deviceFeatures =
+                convertToFeatureSlotPairs(0, ImsResolver.METADATA_EMERGENCY_MMTEL_FEATURE,
+                        ImsResolver.METADATA_MMTEL_FEATURE);
+        ImsFeatureConfigurationCache cache = mock(ImsFeatureConfigurationCache.class);
+        when(cache.get(TEST_DEVICE_DEFAULT_NAME)).thenReturn(new HashSet<>(deviceFeatures));
+        mTestImsResolver.setImsFeatureConfigurationCache(cache);
+
+        startBindNoCarrierConfig(1);
+        processAllMessages();
+
+        // Bound with the cached features while the query is still running.
+        verify(mMockQueryManager, times(1)).startQuery(eq(TEST_DEVICE_DEFAULT_NAME),
+                any(String.class));
+        verify(deviceController, atLeastOnce()).bind(eq(deviceFeatures),
+                any(SparseIntArray.class));
+
+        mDynamicQueryListener.onComplete(TEST_DEVICE_DEFAULT_NAME, deviceFeatures);
+        processAllMessages();
+        verify(cache).put(eq(TEST_DEVICE_DEFAULT_NAME), eq(deviceFeatures));
+    }
+
     /**
      * Test that when a device and carrier override package are set, both ImsServices are bound.
      * Verify that the carrier ImsService features are created and the device default features
@@ -144,6 +144,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RunWith(AndroidTestingRunner.class)
 @TestableLooper.RunWithLooper
@@ -639,6 +640,51 @@ public class ImsPhoneCallTrackerTest extends TelephonyTest {
         verify(mImsPhoneConnectionListener, never()).onConferenceParticipantsChanged(any());
     }
 
+    /**
+     * Stress test that looking up a connection from other threads, as the ImsCall listener
+     * callbacks do, stays correct while conference state updates are processed.
+     */
+    @Test
+    @SmallTest
+    public void testConcurrentConnectionLookupDuringConferenceUpdates() throws Exception {
+        testImsMTCallAccept();
+        doReturn(true).when(mImsCall).isConferenceHost();
+        doReturn(true).when(mImsCall).isMultiparty();
+        ImsPhoneConnection connection = mCTUT.getConnections().get(0);
+
+        AtomicInteger failedLookups = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    if (mCTUT.getConnectionForImsCall(mImsCall) != connection) {
+                        failedLookups.incrementAndGet();
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        for (int i = 0; i < 100; i++) {
+            ImsConferenceState state = new ImsConferenceState();
+            for (int j = 0; j <= i % 5; j++) {
+                String user = "sip:65055512" + j + "@fakeims.com";
+                Bundle participant = new Bundle();
+                participant.putString(ImsConferenceState.USER, user);
+                participant.putString(ImsConferenceState.ENDPOINT, user);
+                participant.putString(ImsConferenceState.STATUS, "connected");
+                state.mParticipants.put(user, participant);
+            }
+            mImsCall.conferenceStateUpdated(state);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, failedLookups.get());
+
+        mCTUT.cleanupAndRemoveConnection(connection);
+        assertNull(mCTUT.getConnectionForImsCall(mImsCall));
+    }
+
     private void injectConferenceState() {
         ImsPhoneConnection connection = mCTUT.getConnections().get(0);
         connection.addListener(mImsPhoneConnectionListener);
@@ -23,6 +23,7 @@ import static com.android.internal.telephony.TelephonyTestUtils.waitForMs;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
@@ -35,6 +36,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.net.Uri;
 import android.os.AsyncResult;
 import android.os.Bundle;
 import android.os.Handler;
@@ -56,6 +58,7 @@ import androidx.test.filters.SmallTest;
 
 import com.android.ims.ImsCall;
 import com.android.ims.ImsException;
+import com.android.ims.internal.ConferenceParticipant;
 import com.android.internal.telephony.Call;
 import com.android.internal.telephony.Connection;
 import com.android.internal.telephony.GsmCdmaCall;
@@ -76,6 +79,7 @@ import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -582,6 +586,65 @@ public class ImsPhoneConnectionTest extends TelephonyTest {
         assertTrue(receivedCountCallback[0]);
     }
 
+    @Test
+    @SmallTest
+    public void testUpdateConferenceParticipantsOnlyNotifiesChanges() {
+        mConnectionUT = new ImsPhoneConnection(mImsPhone, mImsCall, mImsCT, mForeGroundCall, false);
+        Connection.Listener listener = mock(Connection.Listener.class);
+        mConnectionUT.addListener(listener);
+
+        mConnectionUT.updateConferenceParticipants(createParticipants(50, -1));
+        verify(listener, times(1)).onConferenceParticipantsChanged(any());
+        assertNotNull(mConnectionUT.getLastConferenceParticipant(Uri.parse("sip:0@test")));
+
+        // The same participants, parsed again from a new conference event package.
+        mConnectionUT.updateConferenceParticipants(createParticipants(50, -1));
+        verify(listener, times(1)).onConferenceParticipantsChanged(any());
+
+        // One participant changed state.
+        mConnectionUT.updateConferenceParticipants(createParticipants(50, 7));
+        verify(listener, times(2)).onConferenceParticipantsChanged(any());
+
+        // One participant left.
+        mConnectionUT.updateConferenceParticipants(createParticipants(49, 7));
+        verify(listener, times(3)).onConferenceParticipantsChanged(any());
+    }
+
+    /**
+     * Test that frequent conference event packages of a 50 participant conference, in which one
+     * participant changes every 10 updates, only notify the listeners of the changes.
+     */
+    @Test
+    @SmallTest
+    public void testUpdateConferenceParticipantsLargeConference() {
+        mConnectionUT = new ImsPhoneConnection(mImsPhone, mImsCall, mImsCT, mForeGroundCall, false);
+        Connection.Listener listener = mock(Connection.Listener.class);
+        mConnectionUT.addListener(listener);
+
+        int numUpdates = 200;
+        for (int i = 0; i < numUpdates; i++) {
+            mConnectionUT.updateConferenceParticipants(createParticipants(50, i / 10 % 50));
+        }
+
+        verify(listener, times(numUpdates / 10)).onConferenceParticipantsChanged(any());
+    }
+
+    /**
+     * @return {@code count} active participants, except the one at {@code heldIndex} which is
+     * held.
+     */
+    private static List<ConferenceParticipant> createParticipants(int count, int heldIndex) {
+        List<ConferenceParticipant> participants = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            participants.add(new ConferenceParticipant(Uri.parse("tel:" + (1000 + i)), "",
+                    Uri.parse("sip:" + i + "@test"),
+                    i == heldIndex ? android.telecom.Connection.STATE_HOLDING
+                            : android.telecom.Connection.STATE_ACTIVE,
+                    android.telecom.Call.Details.DIRECTION_INCOMING));
+        }
+        return participants;
+    }
+
     private void setUserEnabledBusinessComposer(boolean isEnabled) {
         when(mPhone.getContext()).thenReturn(mContext);
         when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelephonyManager);
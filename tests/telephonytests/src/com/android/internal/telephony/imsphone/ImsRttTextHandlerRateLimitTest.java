@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.imsphone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+
+import com.android.internal.telephony.TelephonyTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the batching and the rate limit of {@link ImsRttTextHandler} on the test looper, with
+ * text passed to the handler directly instead of through the in-call pipe.
+ */
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper
+public class ImsRttTextHandlerRateLimitTest extends TelephonyTest {
+    private static final String TEXT = "No Soldier shall, in time of peace be quartered in any "
+            + "house, without the consent of the Owner, nor in time of war, but in a manner to be "
+            + "prescribed by law.";
+
+    private final List<String> mWrites = new ArrayList<>();
+    private final List<Long> mWriteTimes = new ArrayList<>();
+    // Clock of the rate limit of the handler under test.
+    private long mTimeMillis;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp(getClass().getSimpleName());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mWrites.clear();
+        mWriteTimes.clear();
+        super.tearDown();
+    }
+
+    /**
+     * Test that sustained typing below the rate limit is sent in batches of the text typed during
+     * each buffering delay, and that no text waits longer than the buffering delay.
+     */
+    @Test
+    public void testSustainedTypingBatchedWithinBufferingDelay() {
+        ImsRttTextHandler rttTextHandler = createHandler(
+                ImsRttTextHandler.MAX_CODEPOINTS_PER_SECOND,
+                ImsRttTextHandler.MAX_BUFFERING_DELAY_MILLIS,
+                ImsRttTextHandler.MAX_BUFFERED_CHARACTER_COUNT);
+        // 20 characters per second, below MAX_CODEPOINTS_PER_SECOND, so that 4 characters are
+        // typed during each buffering delay.
+        int keystrokeIntervalMillis = 50;
+        int keystrokesPerBatch =
+                ImsRttTextHandler.MAX_BUFFERING_DELAY_MILLIS / keystrokeIntervalMillis;
+        StringBuilder typed = new StringBuilder();
+        List<String> expectedWrites = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String keystroke = String.valueOf((char) ('a' + i % 26));
+            typed.append(keystroke);
+            rttTextHandler.onTextReadFromInCall(keystroke);
+            processAllMessages();
+            advanceTime(keystrokeIntervalMillis);
+
+            if ((i + 1) % keystrokesPerBatch == 0) {
+                // The buffering delay of the first keystroke of the batch has expired.
+                expectedWrites.add(typed.substring(i + 1 - keystrokesPerBatch));
+                assertEquals(expectedWrites, mWrites);
+            }
+        }
+        assertEquals(typed.toString(), String.join("", mWrites));
+    }
+
+    /**
+     * Test that a burst of text pasted into a handler created with custom tuning is sent one
+     * second worth of codepoints at a time, once per second.
+     */
+    @Test
+    public void testRateLimitWithCustomTuning() {
+        ImsRttTextHandler rttTextHandler = createHandler(10 /* maxCodepointsPerSecond */,
+                100 /* maxBufferingDelayMillis */, 5 /* maxBufferedCodepointCount */);
+        String pasted = TEXT.substring(0, 30);
+
+        rttTextHandler.onTextReadFromInCall(pasted);
+        processAllMessages();
+        assertEquals(Arrays.asList(pasted.substring(0, 10)), mWrites);
+
+        // Nothing more is sent until the first write leaves the one second window.
+        advanceTime(500);
+        assertEquals(1, mWrites.size());
+        advanceTime(500);
+        assertEquals(Arrays.asList(pasted.substring(0, 10), pasted.substring(10, 20)), mWrites);
+
+        advanceTime(500);
+        advanceTime(500);
+        assertEquals(Arrays.asList(pasted.substring(0, 10), pasted.substring(10, 20),
+                pasted.substring(20, 30)), mWrites);
+        assertEquals("", rttTextHandler.getNetworkBufferText());
+    }
+
+    /**
+     * Test that text typed faster than the rate limit, in reads of uneven size, is all sent,
+     * without more than maxCodepointsPerSecond codepoints in any one second window.
+     */
+    @Test
+    public void testNoSecondExceedsRateLimit() {
+        int maxCodepointsPerSecond = 10;
+        ImsRttTextHandler rttTextHandler = createHandler(maxCodepointsPerSecond,
+                100 /* maxBufferingDelayMillis */, 5 /* maxBufferedCodepointCount */);
+        StringBuilder typed = new StringBuilder();
+        int position = 0;
+        for (int i = 0; i < 40; i++) {
+            // About 19 codepoints per second, in reads of 1 to 4 codepoints.
+            String read = TEXT.substring(position, position + i % 4 + 1);
+            position += read.length();
+            typed.append(read);
+            rttTextHandler.onTextReadFromInCall(read);
+            processAllMessages();
+            advanceTime(130);
+        }
+        for (int i = 0; i < 100; i++) {
+            advanceTime(100);
+        }
+
+        assertEquals(typed.toString(), String.join("", mWrites));
+        for (int i = 0; i < mWriteTimes.size(); i++) {
+            long windowEnd = mWriteTimes.get(i) + 1000;
+            int codepointsInWindow = 0;
+            for (int j = i; j < mWriteTimes.size() && mWriteTimes.get(j) < windowEnd; j++) {
+                codepointsInWindow += mWrites.get(j).codePointCount(0, mWrites.get(j).length());
+            }
+            assertTrue("Window starting at " + mWriteTimes.get(i) + " carries "
+                    + codepointsInWindow + " codepoints",
+                    codepointsInWindow <= maxCodepointsPerSecond);
+        }
+    }
+
+    /**
+     * Creates a handler running on the test looper, whose rate limit uses {@link #mTimeMillis}
+     * as its clock, and whose writes are recorded in {@link #mWrites}.
+     */
+    private ImsRttTextHandler createHandler(int maxCodepointsPerSecond,
+            int maxBufferingDelayMillis, int maxBufferedCodepointCount) {
+        return new ImsRttTextHandler(mTestableLooper.getLooper(), s -> {
+            mWrites.add(s);
+            mWriteTimes.add(mTimeMillis);
+        }, maxCodepointsPerSecond, maxBufferingDelayMillis, maxBufferedCodepointCount) {
+            @Override
+            protected long getTimeMillis() {
+                return mTimeMillis;
+            }
+        };
+    }
+
+    /** Moves the clock of the handler forward and runs the messages which are due. */
+    private void advanceTime(long millis) {
+        mTimeMillis += millis;
+        moveTimeForward(millis);
+        processAllMessages();
+    }
+}
@@ -16,6 +16,7 @@
 package com.android.internal.telephony.uicc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.mockito.Mockito.mock;
 
 import android.util.Log;
@@ -81,6 +82,33 @@ public class IccCardStatusTest {
         logd(mIccCardStatus.toString());
     }
 
+    @Test
+    @SmallTest
+    public void testCopyEquals() {
+        IccCardApplicationStatus app = new IccCardApplicationStatus();
+        app.app_type = IccCardApplicationStatus.AppType.APPTYPE_USIM;
+        app.app_state = IccCardApplicationStatus.AppState.APPSTATE_READY;
+        app.aid = "A0000000871002";
+        IccCardStatus status = new IccCardStatus();
+        status.setCardState(IccCardStatus.CardState.CARDSTATE_PRESENT.ordinal());
+        status.setUniversalPinState(IccCardStatus.PinState.PINSTATE_DISABLED.ordinal());
+        status.mApplications = new IccCardApplicationStatus[]{app};
+        status.mGsmUmtsSubscriptionAppIndex = 0;
+        status.iccid = "89014103211118510720";
+        status.mSlotPortMapping = new IccSlotPortMapping();
+
+        IccCardStatus copy = new IccCardStatus(status);
+        assertEquals(status, copy);
+        assertEquals(status.hashCode(), copy.hashCode());
+
+        // The copy must not follow changes made to the original afterwards.
+        app.app_state = IccCardApplicationStatus.AppState.APPSTATE_PIN;
+        assertNotEquals(status, copy);
+        app.app_state = IccCardApplicationStatus.AppState.APPSTATE_READY;
+        status.mSlotPortMapping.mPortIndex = 1;
+        assertNotEquals(status, copy);
+    }
+
     private static void logd(String s) {
         Log.d(TAG, s);
     }
@@ -534,4 +534,53 @@ public class IccFileHandlerTest {
         verify(mCi, times(1)).iccIOForApp(anyInt(), anyInt(), anyString(),
                 anyInt(), anyInt(), anyInt(), anyString(), isNull(), isNull(), any(Message.class));
     }
+
+    @Test
+    public void loadEFLinearFixedAll_ManyRecords() {
+        int efid = 0x4f3a;
+        int recordCount = 250;
+        int recordSize = 0x1C;
+        ArrayList<byte[]> payloads = new ArrayList<>();
+        doAnswer(
+                invocation -> {
+                    Message response = invocation.getArgument(9);
+                    IccIoResult iir;
+                    if (response.what == 6) {
+                        // 250 records of 28 bytes
+                        iir = new IccIoResult(0x90, 0x00, "00001B586F3A040000FFFF0102011C");
+                    } else {
+                        int recordNum = invocation.getArgument(3);
+                        byte[] record = new byte[recordSize];
+                        record[0] = (byte) recordNum;
+                        iir = new IccIoResult(0x90, 0x00, IccUtils.bytesToHexString(record));
+                        payloads.add(iir.payload);
+                    }
+                    AsyncResult.forMessage(response, iir, null);
+                    response.sendToTarget();
+                    return null;
+                }).when(mCi).iccIOForApp(anyInt(), anyInt(), anyString(), anyInt(), anyInt(),
+                anyInt(), isNull(), isNull(), isNull(), any(Message.class));
+
+        AsyncResult[] result = new AsyncResult[1];
+        Handler handler = new Handler(mTestLooper.getLooper()) {
+            @Override
+            public void handleMessage(Message msg) {
+                result[0] = (AsyncResult) msg.obj;
+            }
+        };
+        mIccFileHandler.loadEFLinearFixedAll(efid, null, handler.obtainMessage());
+        mTestLooper.dispatchAll();
+
+        assertNotNull(result[0]);
+        assertNull(result[0].exception);
+        ArrayList<byte[]> records = (ArrayList<byte[]>) result[0].result;
+        assertEquals(recordCount, records.size());
+        for (int i = 0; i < recordCount; i++) {
+            // records are handed over as received, without any copy
+            assertSame(payloads.get(i), records.get(i));
+            assertEquals((byte) (i + 1), records.get(i)[0]);
+        }
+        verify(mCi, times(recordCount + 1)).iccIOForApp(anyInt(), anyInt(), anyString(),
+                anyInt(), anyInt(), anyInt(), isNull(), isNull(), isNull(), any(Message.class));
+    }
 }
@@ -19,14 +19,22 @@ import static com.android.internal.telephony.uicc.IccCardStatus.PinState.PINSTAT
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.AdditionalAnswers.delegatesTo;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.PersistableBundle;
 import android.os.WorkSource;
 import android.preference.PreferenceManager;
@@ -41,7 +49,9 @@ import androidx.test.InstrumentationRegistry;
 import androidx.test.filters.SmallTest;
 
 import com.android.internal.R;
+import com.android.internal.telephony.Phone;
 import com.android.internal.telephony.PhoneConstants;
+import com.android.internal.telephony.PhoneFactory;
 import com.android.internal.telephony.TelephonyTest;
 
 import org.junit.After;
@@ -51,6 +61,9 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @RunWith(AndroidTestingRunner.class)
 @TestableLooper.RunWithLooper
 public class PinStorageTest extends TelephonyTest {
@@ -66,6 +79,10 @@ public class PinStorageTest extends TelephonyTest {
     private PinStorage mPinStorage;
     private PersistableBundle mBundle;
 
+    // Editors of the shared preferences, once wrapped by wrapSharedPreferences()
+    private final List<SharedPreferences.Editor> mEditors = new ArrayList<>();
+    private boolean mFailCommits;
+
     // mocks
     private CarrierConfigManager.CarrierConfigChangeListener mCarrierConfigChangeListener;
 
@@ -88,6 +105,30 @@ public class PinStorageTest extends TelephonyTest {
         mCarrierConfigChangeListener = listenerArgumentCaptor.getAllValues().get(0);
     }
 
+    /**
+     * Wraps the shared preferences, so that the editors used by PinStorage are recorded in
+     * {@link #mEditors} and their commits fail while {@link #mFailCommits} is set.
+     */
+    private void wrapSharedPreferences() {
+        SharedPreferences prefs = mContext.getSharedPreferences("", Context.MODE_PRIVATE);
+        SharedPreferences wrapper = mock(SharedPreferences.class, delegatesTo(prefs));
+        doAnswer(invocation -> {
+            SharedPreferences.Editor editor = prefs.edit();
+            SharedPreferences.Editor[] wrappedEditor = new SharedPreferences.Editor[1];
+            wrappedEditor[0] = mock(SharedPreferences.Editor.class, editorInvocation -> {
+                String name = editorInvocation.getMethod().getName();
+                if (mFailCommits && name.equals("commit")) return false;
+                if (mFailCommits && name.equals("apply")) return null;
+                Object result = editorInvocation.getMethod().invoke(
+                        editor, editorInvocation.getArguments());
+                return result == editor ? wrappedEditor[0] : result;
+            });
+            mEditors.add(wrappedEditor[0]);
+            return wrappedEditor[0];
+        }).when(wrapper).edit();
+        doReturn(wrapper).when(mContext).getSharedPreferences(anyString(), anyInt());
+    }
+
     @Before
     public void setUp() throws Exception {
         super.setUp(getClass().getSimpleName());
@@ -439,4 +480,61 @@ public class PinStorageTest extends TelephonyTest {
 
         assertThat(mPinStorage.getPin(0, ICCID_1)).isEqualTo("");
     }
+
+    @Test
+    @SmallTest
+    public void storePin_unattendedReboot_pinsOfAllSlotsCommittedAtOnce() throws Exception {
+        mPhones = new Phone[] {mPhone, mPhone2};
+        replaceInstance(PhoneFactory.class, "sPhones", null, mPhones);
+        doReturn(ICCID_2).when(mPhone2).getFullIccSerialNumber();
+        mPinStorage.storePin("1234", 0);
+        mPinStorage.storePin("5678", 1);
+
+        wrapSharedPreferences();
+        int result = mPinStorage.prepareUnattendedReboot(sWorkSource);
+        assertThat(result).isEqualTo(TelephonyManager.PREPARE_UNATTENDED_REBOOT_SUCCESS);
+
+        // The PINs of both slots are written with a single commit, followed by the commit of the
+        // number of cached PINs.
+        assertThat(mEditors).hasSize(2);
+        verify(mEditors.get(0), times(2)).putString(anyString(), anyString());
+        verify(mEditors.get(0)).commit();
+        verify(mEditors.get(0), never()).apply();
+
+        simulateReboot();
+
+        assertThat(mPinStorage.getPin(0, ICCID_1)).isEqualTo("1234");
+        assertThat(mPinStorage.getPin(1, ICCID_2)).isEqualTo("5678");
+    }
+
+    @Test
+    @SmallTest
+    public void storePin_commitFails_pinCannotBeRetrieved() {
+        wrapSharedPreferences();
+        mFailCommits = true;
+        mPinStorage.storePin("1234", 0);
+        mFailCommits = false;
+
+        // The PIN is written synchronously, so that the failure is detected.
+        assertThat(mEditors).hasSize(1);
+        verify(mEditors.get(0)).commit();
+        verify(mEditors.get(0), never()).apply();
+
+        mPinStorage.prepareUnattendedReboot(sWorkSource);
+        simulateReboot();
+
+        assertThat(mPinStorage.getPin(0, ICCID_1)).isEqualTo("");
+    }
+
+    @Test
+    @SmallTest
+    public void storePin_unattendedRebootCommitFails_returnsError() {
+        mPinStorage.storePin("1234", 0);
+
+        wrapSharedPreferences();
+        mFailCommits = true;
+        int result = mPinStorage.prepareUnattendedReboot(sWorkSource);
+
+        assertThat(result).isEqualTo(TelephonyManager.PREPARE_UNATTENDED_REBOOT_ERROR);
+    }
 }
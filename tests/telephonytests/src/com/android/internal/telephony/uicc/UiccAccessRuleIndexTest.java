@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.internal.telephony.uicc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.pm.PackageInfo;
+import android.content.pm.Signature;
+import android.telephony.TelephonyManager;
+import android.telephony.UiccAccessRule;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class UiccAccessRuleIndexTest {
+    private static final String PACKAGE_1 = "android.test.package1";
+    private static final String PACKAGE_2 = "android.test.package2";
+
+    private static final Signature SIGNATURE_1 = new Signature("11223344");
+    private static final Signature SIGNATURE_2 = new Signature("AABBCCDD");
+
+    private static String hash(Signature signature, String algorithm) {
+        return IccUtils.bytesToHexString(UiccAccessRule.getCertHash(signature, algorithm));
+    }
+
+    private static UiccAccessRule rule(String certHash, String packageName) {
+        return new UiccAccessRule(IccUtils.hexStringToBytes(certHash), packageName, 0L);
+    }
+
+    private static PackageInfo packageInfo(String packageName, Signature... signatures) {
+        PackageInfo pkg = new PackageInfo();
+        pkg.packageName = packageName;
+        pkg.signatures = signatures;
+        return pkg;
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(UiccAccessRuleIndex.EMPTY.isEmpty());
+        assertFalse(UiccAccessRuleIndex.EMPTY.matches(hash(SIGNATURE_1, "SHA-256"), PACKAGE_1));
+        assertEquals(TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS,
+                UiccAccessRuleIndex.EMPTY.getCarrierPrivilegeStatus(
+                        packageInfo(PACKAGE_1, SIGNATURE_1)));
+    }
+
+    @Test
+    public void testMatchesPackageConstraint() {
+        String cert = hash(SIGNATURE_1, "SHA-256");
+        UiccAccessRuleIndex index = new UiccAccessRuleIndex(Arrays.asList(
+                rule(cert, PACKAGE_1), rule(hash(SIGNATURE_2, "SHA-256"), null)));
+
+        assertEquals(2, index.size());
+        assertTrue(index.matches(cert, PACKAGE_1));
+        assertFalse(index.matches(cert, PACKAGE_2));
+        assertTrue(index.matches(hash(SIGNATURE_2, "SHA-256"), PACKAGE_2));
+        assertFalse(index.matches(null, PACKAGE_1));
+    }
+
+    @Test
+    public void testSha1RuleMatchesSha1Hash() {
+        UiccAccessRuleIndex index = new UiccAccessRuleIndex(
+                List.of(rule(hash(SIGNATURE_1, "SHA-1"), null)));
+
+        assertEquals(TelephonyManager.CARRIER_PRIVILEGE_STATUS_HAS_ACCESS,
+                index.getCarrierPrivilegeStatus(SIGNATURE_1, PACKAGE_1));
+        assertEquals(TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS,
+                index.getCarrierPrivilegeStatus(SIGNATURE_2, PACKAGE_1));
+    }
+
+    @Test
+    public void testGetCertHashes() {
+        Set<String> certs = UiccAccessRuleIndex.getCertHashes(
+                packageInfo(PACKAGE_1, SIGNATURE_1, SIGNATURE_2));
+
+        assertEquals(Set.of(hash(SIGNATURE_1, "SHA-1"), hash(SIGNATURE_1, "SHA-256"),
+                hash(SIGNATURE_2, "SHA-1"), hash(SIGNATURE_2, "SHA-256")), certs);
+    }
+
+    @Test
+    public void testSameResultAsLinearScan() {
+        Signature[] signatures = {SIGNATURE_1, SIGNATURE_2, new Signature("FFFFFFFF")};
+        String[] packages = {PACKAGE_1, PACKAGE_2, null};
+        List<UiccAccessRule> rules = new ArrayList<>();
+        for (int i = 0; i < signatures.length - 1; i++) {
+            rules.add(rule(hash(signatures[i], i % 2 == 0 ? "SHA-1" : "SHA-256"), packages[i]));
+        }
+        UiccAccessRuleIndex index = new UiccAccessRuleIndex(rules);
+
+        for (Signature signature : signatures) {
+            for (String packageName : packages) {
+                int expected = TelephonyManager.CARRIER_PRIVILEGE_STATUS_NO_ACCESS;
+                for (UiccAccessRule rule : rules) {
+                    if (rule.getCarrierPrivilegeStatus(signature, packageName)
+                            == TelephonyManager.CARRIER_PRIVILEGE_STATUS_HAS_ACCESS) {
+                        expected = TelephonyManager.CARRIER_PRIVILEGE_STATUS_HAS_ACCESS;
+                    }
+                }
+                assertEquals(expected, index.getCarrierPrivilegeStatus(signature, packageName));
+            }
+        }
+    }
+}
@@ -43,9 +43,13 @@ import org.junit.runner.RunWith;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 @RunWith(AndroidTestingRunner.class)
 @TestableLooper.RunWithLooper
@@ -812,4 +816,168 @@ public class UiccCarrierPrivilegeRulesTest extends TelephonyTest {
         assertEquals(0, mUiccCarrierPrivilegeRules.getCarrierPrivilegeStatus(signature,
                 mUiccCarrierPrivilegeRules.getPackageNames().get(0)));
     }
+
+    @Test
+    @SmallTest
+    public void testParseRules_ManyRules() {
+        final int numRules = 300;
+        StringBuilder refArDos = new StringBuilder();
+        for (int i = 0; i < numRules; i++) {
+            refArDos.append(encodeRule(String.format("%040X", i), "com.example.app" + i));
+        }
+        byte[] rules = IccUtils.hexStringToBytes(encodeTlv("FF40", refArDos.toString()));
+
+        List<UiccAccessRule> accessRules = UiccCarrierPrivilegeRules.parseRules(rules,
+                rules.length);
+
+        assertEquals(numRules, accessRules.size());
+        for (int i = 0; i < numRules; i++) {
+            assertEquals(String.format("%040X", i),
+                    accessRules.get(i).getCertificateHexString());
+            assertEquals("com.example.app" + i, accessRules.get(i).getPackageName());
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void testParseRules_FuzzMatchesHexParser() {
+        String[] seeds = {
+                "FF4045E243E135C114ABCD92CBB156B280FA4E1429A6ECEEB6E5C1BFE4CA1D636F6D2E676F6F676"
+                        + "C652E616E64726F69642E617070732E6D79617070E30ADB080000000000000001",
+                "FF4034E232E11E4F06FFFFFFFFFFFFC114B61BE34AD2C20D7AFED84"
+                        + "93C313A137F89FA2765E310D00101D10101DB080000000000000001",
+                "FF4068E239E12B4F06FFFFFFFFFFFFC102B61BCA1D636F6D2E676F6F676C652E616E64726F69642"
+                        + "E617070732E6D79617070E30AD00101D10101DB020001E22BE123C102ABCDCA1D636F"
+                        + "6D2E676F6F676C652E616E64726F69642E617070732E6D79617070E304DB020001",
+                "FF4024E222E1184F00C11475C073AFD219AEB221948E828F066E778ADFDF23E306D00101D10101",
+        };
+        Random random = new Random(0x5eed);
+        for (int iteration = 0; iteration < 5000; iteration++) {
+            byte[] data = IccUtils.hexStringToBytes(seeds[random.nextInt(seeds.length)]);
+            int mutations = 1 + random.nextInt(3);
+            for (int i = 0; i < mutations; i++) {
+                int index = random.nextInt(data.length);
+                switch (random.nextInt(3)) {
+                    case 0: // Flip one byte
+                        data[index] = (byte) random.nextInt(256);
+                        break;
+                    case 1: // Truncate
+                        data = Arrays.copyOf(data, index);
+                        break;
+                    default: // Tweak a length byte candidate
+                        data[index] = (byte) (data[index] + (random.nextBoolean() ? 1 : -1));
+                        break;
+                }
+                if (data.length == 0) break;
+            }
+
+            final byte[] rules = data;
+            final String hex = IccUtils.bytesToHexString(rules);
+            String expected = parseOutcome(() -> parseRulesFromHex(hex));
+            String actual = parseOutcome(
+                    () -> UiccCarrierPrivilegeRules.parseRules(rules, rules.length));
+            assertEquals("Mismatch for " + hex, expected, actual);
+        }
+    }
+
+    private static String encodeLength(int length) {
+        if (length < 0x80) return String.format("%02X", length);
+        if (length <= 0xFF) return String.format("81%02X", length);
+        return String.format("82%04X", length);
+    }
+
+    private static String encodeTlv(String tag, String valueHex) {
+        return tag + encodeLength(valueHex.length() / 2) + valueHex;
+    }
+
+    private static String encodeRule(String certHash, String packageName) {
+        String refDo = encodeTlv("C1", certHash) + encodeTlv("CA",
+                IccUtils.bytesToHexString(packageName.getBytes()));
+        String arDo = encodeTlv("DB", "0000000000000001");
+        return encodeTlv("E2", encodeTlv("E1", refDo) + encodeTlv("E3", arDo));
+    }
+
+    /** Classifies the result of parsing, so that two parsers can be compared. */
+    private static String parseOutcome(Supplier<List<UiccAccessRule>> parser) {
+        try {
+            return parser.get().toString();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return "malformed";
+        } catch (RuntimeException e) {
+            return "invalid rule type";
+        }
+    }
+
+    /** Reference parser working on hex strings, as the rules used to be parsed. */
+    private static List<UiccAccessRule> parseRulesFromHex(String rules) {
+        UiccCarrierPrivilegeRules.TLV allRefArDo = new UiccCarrierPrivilegeRules.TLV("FF40");
+        allRefArDo.parse(rules, true);
+
+        String arDos = allRefArDo.getValue();
+        List<UiccAccessRule> accessRules = new ArrayList<>();
+        while (!arDos.isEmpty()) {
+            UiccCarrierPrivilegeRules.TLV refArDo = new UiccCarrierPrivilegeRules.TLV("E2");
+            arDos = refArDo.parse(arDos, false);
+            UiccAccessRule accessRule = parseRefArdoFromHex(refArDo.getValue());
+            if (accessRule != null) {
+                accessRules.add(accessRule);
+            }
+        }
+        return accessRules;
+    }
+
+    private static UiccAccessRule parseRefArdoFromHex(String rule) {
+        String certificateHash = null;
+        String packageName = null;
+        while (!rule.isEmpty()) {
+            if (rule.startsWith("E1")) {
+                UiccCarrierPrivilegeRules.TLV refDo = new UiccCarrierPrivilegeRules.TLV("E1");
+                rule = refDo.parse(rule, false);
+                UiccCarrierPrivilegeRules.TLV deviceDo = new UiccCarrierPrivilegeRules.TLV("C1");
+                String tmp;
+                if (refDo.getValue().startsWith("4F")) {
+                    UiccCarrierPrivilegeRules.TLV cpDo = new UiccCarrierPrivilegeRules.TLV("4F");
+                    String remain = cpDo.parse(refDo.getValue(), false);
+                    if (!cpDo.parseLength(refDo.getValue()).equals("06")
+                            || !cpDo.getValue().equals("FFFFFFFFFFFF")
+                            || remain.isEmpty() || !remain.startsWith("C1")) {
+                        return null;
+                    }
+                    tmp = deviceDo.parse(remain, false);
+                } else if (refDo.getValue().startsWith("C1")) {
+                    tmp = deviceDo.parse(refDo.getValue(), false);
+                } else {
+                    return null;
+                }
+                certificateHash = deviceDo.getValue();
+                if (!tmp.isEmpty()) {
+                    if (!tmp.startsWith("CA")) {
+                        return null;
+                    }
+                    UiccCarrierPrivilegeRules.TLV pkgDo = new UiccCarrierPrivilegeRules.TLV("CA");
+                    pkgDo.parse(tmp, true);
+                    packageName = new String(IccUtils.hexStringToBytes(pkgDo.getValue()));
+                } else {
+                    packageName = null;
+                }
+            } else if (rule.startsWith("E3")) {
+                UiccCarrierPrivilegeRules.TLV arDo = new UiccCarrierPrivilegeRules.TLV("E3");
+                rule = arDo.parse(rule, false);
+                String remain = arDo.getValue();
+                while (!remain.isEmpty() && !remain.startsWith("DB")) {
+                    UiccCarrierPrivilegeRules.TLV tmpDo =
+                            new UiccCarrierPrivilegeRules.TLV(remain.substring(0, 2));
+                    remain = tmpDo.parse(remain, false);
+                }
+                if (remain.isEmpty()) {
+                    return null;
+                }
+                UiccCarrierPrivilegeRules.TLV permDo = new UiccCarrierPrivilegeRules.TLV("DB");
+                permDo.parse(remain, true);
+            } else {
+                throw new RuntimeException("Invalid Rule type");
+            }
+        }
+        return new UiccAccessRule(IccUtils.hexStringToBytes(certificateHash), packageName, 0);
+    }
 }
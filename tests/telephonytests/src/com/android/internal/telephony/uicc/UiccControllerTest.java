@@ -23,6 +23,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -42,6 +43,7 @@ import android.testing.TestableLooper;
 import androidx.test.InstrumentationRegistry;
 import androidx.test.filters.SmallTest;
 
+import com.android.internal.telephony.CommandsInterface;
 import com.android.internal.telephony.TelephonyTest;
 import com.android.internal.telephony.uicc.euicc.EuiccCard;
 
@@ -699,6 +701,44 @@ public class UiccControllerTest extends TelephonyTest {
                 mUiccControllerUT.getCardIdForDefaultEuicc());
     }
 
+    @Test
+    public void testIdenticalCardStatusSuppressed() {
+        mUiccControllerUT.mUiccSlots[0] = mMockSlot;
+        doReturn(mMockCard).when(mMockSlot).getUiccCard();
+        doReturn(false).when(mMockSlot).isEuicc();
+        doReturn(mMockPort).when(mMockCard).getUiccPort(0);
+        doReturn("123451234567890").when(mMockPort).getIccId();
+
+        for (int i = 0; i < 3; i++) {
+            IccCardStatus ics = new IccCardStatus();
+            ics.setCardState(1 /* present */);
+            ics.setUniversalPinState(3 /* disabled */);
+            ics.iccid = "123451234567890";
+            ics.mSlotPortMapping = new IccSlotPortMapping();
+            ics.mSlotPortMapping.mPhysicalSlotIndex = 0;
+            AsyncResult ar = new AsyncResult(null, ics, null);
+            mUiccControllerUT.handleMessage(
+                    Message.obtain(mUiccControllerUT, EVENT_GET_ICC_STATUS_DONE, ar));
+        }
+
+        // identical card statuses are applied only once
+        verify(mMockSlot, times(1)).update(any(CommandsInterface.class), any(IccCardStatus.class),
+                anyInt(), anyInt());
+
+        // a changed card status is applied again
+        IccCardStatus ics = new IccCardStatus();
+        ics.setCardState(1 /* present */);
+        ics.setUniversalPinState(1 /* enabled, not verified */);
+        ics.iccid = "123451234567890";
+        ics.mSlotPortMapping = new IccSlotPortMapping();
+        ics.mSlotPortMapping.mPhysicalSlotIndex = 0;
+        AsyncResult ar = new AsyncResult(null, ics, null);
+        mUiccControllerUT.handleMessage(
+                Message.obtain(mUiccControllerUT, EVENT_GET_ICC_STATUS_DONE, ar));
+        verify(mMockSlot, times(2)).update(any(CommandsInterface.class), any(IccCardStatus.class),
+                anyInt(), anyInt());
+    }
+
     @Test
     public void testSlotStatusChanged() {
         // simulate slot status loaded so that the UiccController sets the last slot status